@@ -0,0 +1,145 @@
+package com.samklas.document_ai_backend.config;
+
+import com.samklas.document_ai_backend.integration.AdaptiveConcurrencyLimiter;
+import com.samklas.document_ai_backend.integration.CircuitBreaker;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class MLClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(MLClientConfig.class);
+
+    @Value("${ml.client.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${ml.client.max-connections-per-route:20}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${ml.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${ml.client.read-timeout-ms:120000}")
+    private long readTimeoutMs;
+
+    @Value("${ml.client.pool-timeout-ms:5000}")
+    private long poolTimeoutMs;
+
+    @Value("${ml.client.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${ml.client.http2:false}")
+    private boolean http2;
+
+    @Value("${ml.resilience.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${ml.resilience.breaker.open-duration-ms:30000}")
+    private long breakerOpenDurationMs;
+
+    @Value("${ml.resilience.limit.initial:4}")
+    private int initialLimit;
+
+    @Value("${ml.resilience.limit.min:1}")
+    private int minLimit;
+
+    @Value("${ml.resilience.limit.max:20}")
+    private int maxLimit;
+
+    @Value("${ml.resilience.limit.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${ml.resilience.limit.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    /**
+     * Request factory for ML service calls
+     * Pooled HTTP/1.1 connections by default, a single multiplexed HTTP/2 connection when ml.client.http2 is set.
+     * Both stream request bodies without buffering.
+     */
+    @Bean
+    public ClientHttpRequestFactory mlRequestFactory() {
+        if (http2) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            return requestFactory;
+        }
+
+        return new HttpComponentsClientHttpRequestFactory(pooledHttpClient());
+    }
+
+    @Bean
+    public RestClient mlRestClient(RestClient.Builder builder, ClientHttpRequestFactory mlRequestFactory) {
+        return builder
+                .requestFactory(mlRequestFactory)
+                .build();
+    }
+
+    @Bean
+    public CircuitBreaker mlCircuitBreaker() {
+        return new CircuitBreaker(breakerFailureThreshold, Duration.ofMillis(breakerOpenDurationMs));
+    }
+
+    /**
+     * Concurrent ML requests across all workers of this node
+     * With the HTTP/1.1 pool the limit never goes above ml.client.max-connections-per-route, requests
+     * beyond that would only wait for a connection and time out locally.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter mlConcurrencyLimiter() {
+        int limit = maxLimit;
+        if (!http2 && maxLimit > maxConnectionsPerRoute) {
+            logger.warn("ml.resilience.limit.max {} is above ml.client.max-connections-per-route, using {}",
+                    maxLimit, maxConnectionsPerRoute);
+            limit = maxConnectionsPerRoute;
+        }
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, limit, latencyTolerance,
+                Duration.ofMillis(acquireTimeoutMs));
+    }
+
+    private CloseableHttpClient pooledHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Max wait for a free pooled connection
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
+                .evictExpiredConnections()
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.samklas.document_ai_backend.config;
+
+import com.samklas.document_ai_backend.integration.AdaptiveConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ProcessingConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Threads for the OCR workers
+     * One long-running worker per possible concurrent ML call, up to the concurrency limiter's max.
+     * How many of them call the ML service at once is up to the limiter.
+     * With spring.threads.virtual.enabled each worker is a virtual thread, a worker blocked on
+     * the ML service or the database then holds no platform thread.
+     */
+    @Bean
+    public TaskExecutor documentProcessingExecutor(AdaptiveConcurrencyLimiter mlConcurrencyLimiter) {
+        int workers = mlConcurrencyLimiter.maxLimit();
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("doc-worker-");
+            executor.setVirtualThreads(true);
+            // Wait for running batches on close, like the pool below
+            executor.setTaskTerminationTimeout(30_000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("doc-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
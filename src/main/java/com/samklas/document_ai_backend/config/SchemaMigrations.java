@@ -0,0 +1,147 @@
+package com.samklas.document_ai_backend.config;
+
+import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.service.DocumentTextStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data migrations for databases created by earlier versions
+ * ddl-auto=update adds new tables and columns, this moves existing data into them.
+ * Runs once Hibernate has updated the schema and before the app serves requests, every step is idempotent.
+ */
+@Component
+public class SchemaMigrations implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentTextStore documentTextStore;
+
+    // EntityManagerFactory dependency makes sure the schema update has already run
+    public SchemaMigrations(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            DocumentTextStore documentTextStore, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.documentTextStore = documentTextStore;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        moveExtractedText();
+        normalizeStatus();
+        backfillProcessedAt();
+        createIndexes();
+        alignDocumentSequence();
+    }
+
+    /**
+     * Move documents.extracted_text into document_texts and drop the column
+     */
+    private void moveExtractedText() {
+        if (!columnExists("DOCUMENTS", "EXTRACTED_TEXT")) {
+            return;
+        }
+
+        logger.info("Moving extracted text out of the documents table");
+        int moved = 0;
+
+        while (true) {
+            int chunk = transactionTemplate.execute(tx -> {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        "SELECT id, extracted_text FROM documents WHERE extracted_text IS NOT NULL " +
+                                "ORDER BY id FETCH FIRST " + CHUNK_SIZE + " ROWS ONLY");
+
+                for (Map<String, Object> row : rows) {
+                    Long id = ((Number) row.get("ID")).longValue();
+                    documentTextStore.save(id, (String) row.get("EXTRACTED_TEXT"));
+                    jdbcTemplate.update("UPDATE documents SET extracted_text = NULL WHERE id = ?", id);
+                }
+                return rows.size();
+            });
+
+            moved += chunk;
+            if (chunk < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        jdbcTemplate.execute("ALTER TABLE documents DROP COLUMN extracted_text");
+        logger.info("Moved extracted text of {} documents", moved);
+    }
+
+    /**
+     * Status used to be a free-form string, map anything that is not a DocumentStatus name
+     */
+    private void normalizeStatus() {
+        jdbcTemplate.update("UPDATE documents SET status = UPPER(TRIM(status)) WHERE status <> UPPER(TRIM(status))");
+
+        int unknown = jdbcTemplate.update(
+                "UPDATE documents SET status = 'FAILED', error_message = 'Unknown status: ' || status " +
+                        "WHERE status NOT IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED')");
+        if (unknown > 0) {
+            logger.warn("Marked {} documents with an unknown status as FAILED", unknown);
+        }
+    }
+
+    /**
+     * The search index pages through completed documents by processed_at, give any without one their creation time
+     */
+    private void backfillProcessedAt() {
+        int backfilled = jdbcTemplate.update(
+                "UPDATE documents SET processed_at = created_at WHERE status = 'COMPLETED' AND processed_at IS NULL");
+        if (backfilled > 0) {
+            logger.info("Set processed_at on {} completed documents", backfilled);
+        }
+    }
+
+    /**
+     * Indexes for the pending sweep, list filters, the unfiltered list and the search index poll
+     * Created by ddl-auto=update as well, this covers databases where schema update is turned off
+     */
+    private void createIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_status_created ON documents (status, created_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_status_priority_created ON documents (status, priority, created_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_type_created ON documents (document_type, created_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_created ON documents (created_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_status_processed ON documents (status, processed_at, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_documents_content_hash ON documents (content_hash)");
+    }
+
+    /**
+     * Ids used to come from an identity column, move the new sequence past the existing rows
+     * Pooled ids are handed out below the sequence value, so a full allocation is kept clear
+     */
+    private void alignDocumentSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM documents", Long.class);
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = 'DOCUMENTS_SEQ'",
+                Long.class);
+
+        // The next block covers ids above nextValue - allocation size
+        if (nextValue != null && maxId != null && nextValue - Document.ID_ALLOCATION_SIZE < maxId) {
+            long restartWith = maxId + Document.ID_ALLOCATION_SIZE + 1;
+            jdbcTemplate.execute("ALTER SEQUENCE documents_seq RESTART WITH " + restartWith);
+            logger.info("Restarted documents_seq at {} after existing document ids", restartWith);
+        }
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE UPPER(TABLE_NAME) = ? AND UPPER(COLUMN_NAME) = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.samklas.document_ai_backend.config;
+
+import com.samklas.document_ai_backend.search.DocumentSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class SearchConfig {
+
+    @Value("${search.index.path:./data/search-index}")
+    private String indexPath;
+
+    /**
+     * Full-text index of this node, closed and committed on shutdown
+     */
+    @Bean
+    public DocumentSearchIndex documentSearchIndex() throws IOException {
+        return new DocumentSearchIndex(Paths.get(indexPath));
+    }
+}
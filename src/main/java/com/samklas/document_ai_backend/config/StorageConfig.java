@@ -0,0 +1,30 @@
+package com.samklas.document_ai_backend.config;
+
+import com.samklas.document_ai_backend.storage.DocumentStore;
+import com.samklas.document_ai_backend.storage.FsyncPolicy;
+import com.samklas.document_ai_backend.storage.LocalShardedDocumentStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class StorageConfig {
+
+    @Value("${document.storage.path:./uploads}")
+    private String storagePath;
+
+    @Value("${document.storage.fsync:FILE}")
+    private FsyncPolicy fsyncPolicy;
+
+    /**
+     * Where uploaded files live
+     * Local sharded directories, another DocumentStore can be plugged in here
+     */
+    @Bean
+    public DocumentStore documentStore() throws IOException {
+        return new LocalShardedDocumentStore(Paths.get(storagePath), fsyncPolicy);
+    }
+}
@@ -0,0 +1,99 @@
+package com.samklas.document_ai_backend.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samklas.document_ai_backend.dto.BulkUploadResult;
+import com.samklas.document_ai_backend.dto.DocumentResponse;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.service.DocumentService;
+import com.samklas.document_ai_backend.service.StoredUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects stored files of a bulk upload and writes their rows chunk by chunk
+ * Each committed chunk is written out as NDJSON lines and flushed, so memory stays bounded by the chunk size
+ */
+class BulkUploadWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkUploadWriter.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final DocumentService documentService;
+    private final ObjectMapper objectMapper;
+    private final OutputStream out;
+    private final int chunkSize;
+    private final DocumentPriority priority;
+    private final String submitter;
+    private final List<StoredUpload> chunk;
+    private boolean written;
+
+    BulkUploadWriter(DocumentService documentService, ObjectMapper objectMapper, OutputStream out, int chunkSize,
+                     DocumentPriority priority, String submitter) {
+        this.documentService = documentService;
+        this.objectMapper = objectMapper;
+        this.out = out;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.priority = priority;
+        this.submitter = submitter;
+        this.chunk = new ArrayList<>(this.chunkSize);
+    }
+
+    void add(StoredUpload upload) throws IOException {
+        chunk.add(upload);
+        if (chunk.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    void reject(String filename, String error) throws IOException {
+        write(BulkUploadResult.rejected(filename, error));
+        out.flush();
+    }
+
+    /**
+     * Insert the pending chunk in one transaction and write out its results
+     */
+    void flush() throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<DocumentResponse> saved;
+        try {
+            saved = documentService.saveUploads(chunk, priority, submitter);
+        } catch (RuntimeException e) {
+            logger.error("Error saving bulk upload chunk of {} documents", chunk.size(), e);
+            for (StoredUpload upload : chunk) {
+                write(BulkUploadResult.rejected(upload.filename(), "Failed to save document"));
+            }
+            chunk.clear();
+            out.flush();
+            return;
+        }
+
+        for (DocumentResponse document : saved) {
+            write(BulkUploadResult.stored(document));
+        }
+        chunk.clear();
+        out.flush();
+    }
+
+    /**
+     * Whether any result line has been written, the response is committed from then on
+     */
+    boolean hasWritten() {
+        return written;
+    }
+
+    private void write(BulkUploadResult result) throws IOException {
+        written = true;
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write(NEWLINE);
+    }
+}
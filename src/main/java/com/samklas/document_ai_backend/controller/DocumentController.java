@@ -1,33 +1,92 @@
 package com.samklas.document_ai_backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.search.DocumentSearchIndex;
+import com.samklas.document_ai_backend.service.DocumentSearchService;
 import com.samklas.document_ai_backend.service.DocumentService;
+import com.samklas.document_ai_backend.service.DocumentStatusNotifier;
+import com.samklas.document_ai_backend.service.QueuedDocument;
 import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.dto.DocumentPage;
+import com.samklas.document_ai_backend.dto.DocumentSearchHit;
 import com.samklas.document_ai_backend.dto.DocumentResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.LongFunction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @RestController
 @RequestMapping("/api/documents")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {DocumentController.NEXT_CURSOR_HEADER, DocumentController.TOTAL_COUNT_HEADER})
 public class DocumentController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
+    static final int MAX_SUBSCRIBED_IDS = 500;
+
+    static final String SUBMITTER_HEADER = "X-Submitter";
+
+    private static final int MAX_SUBMITTER_LENGTH = 128;
+
     private final DocumentService documentService;
+    private final DocumentSearchService searchService;
+    private final DocumentStatusNotifier statusNotifier;
+    private final ObjectMapper objectMapper;
 
-    public DocumentController(DocumentService documentService) {
+    @Value("${upload.bulk.chunk-size:50}")
+    private int bulkChunkSize;
+
+    @Value("${spring.servlet.multipart.max-file-size:200MB}")
+    private DataSize maxFileSize;
+
+    @Value("${spring.servlet.multipart.max-request-size:2GB}")
+    private DataSize maxRequestSize;
+
+    @Value("${upload.bulk.max-entries:10000}")
+    private int maxArchiveEntries;
+
+    public DocumentController(DocumentService documentService, DocumentSearchService searchService,
+                              DocumentStatusNotifier statusNotifier, ObjectMapper objectMapper) {
         this.documentService = documentService;
+        this.searchService = searchService;
+        this.statusNotifier = statusNotifier;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * Upload document for OCR processing
+     * Processed as INTERACTIVE unless another priority is given
      */
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<DocumentResponse> uploadDocument(
-            @RequestParam("file") MultipartFile file) {
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "INTERACTIVE") DocumentPriority priority,
+            @RequestHeader(value = SUBMITTER_HEADER, required = false) String submitter) {
 
         // Validoi tiedosto
         if (file.isEmpty()) {
@@ -40,27 +99,211 @@ public class DocumentController {
             return ResponseEntity.badRequest().build();
         }
 
-        DocumentResponse response = documentService.processDocument(file);
+        DocumentResponse response = documentService.processDocument(file, priority, submitterKey(submitter));
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Upload many documents in one request
+     * Responds with one NDJSON line per file, written as soon as the file's chunk is committed.
+     * Processed as BULK unless another priority is given
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> uploadDocuments(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(defaultValue = "BULK") DocumentPriority priority,
+            @RequestHeader(value = SUBMITTER_HEADER, required = false) String submitter) {
+
+        return bulkResponse(priority, submitter, writer -> {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    writer.reject(file.getOriginalFilename(), "Empty file");
+                } else if (!isValidFileType(file.getContentType())) {
+                    writer.reject(file.getOriginalFilename(), "Unsupported file type");
+                } else {
+                    // Parts are already spooled to disk, read one at a time
+                    try (InputStream in = file.getInputStream()) {
+                        writer.add(documentService.storeFile(in, file.getOriginalFilename(), file.getContentType()));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Upload a ZIP archive of documents
+     * Entries are read straight from the request body, one at a time, the archive is never stored whole.
+     * The body is held to max-request-size and upload.bulk.max-entries like a multipart request. Over either
+     * limit the answer is 413, or a final error line once results have already been sent.
+     */
+    @PostMapping(value = "/bulk", consumes = "application/zip", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> uploadArchive(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "BULK") DocumentPriority priority,
+            @RequestHeader(value = SUBMITTER_HEADER, required = false) String submitter) throws IOException {
+        if (request.getContentLengthLong() > maxRequestSize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        // Chunked bodies have no length up front, enforce the limit while reading
+        InputStream body = new SizeLimitedInputStream(request.getInputStream(), maxRequestSize.toBytes(),
+                maxBytes -> new ArchiveTooLargeException("Archive exceeds " + maxRequestSize));
+
+        return bulkResponse(priority, submitter, writer -> {
+            try (ZipInputStream zip = new ZipInputStream(body)) {
+                int entries = 0;
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    if (++entries > maxArchiveEntries) {
+                        throw new ArchiveTooLargeException("Archive has more than " + maxArchiveEntries + " files");
+                    }
+
+                    // Entry names may contain directories, only the file name is kept
+                    String filename = Paths.get(entry.getName()).getFileName().toString();
+                    String contentType = MediaTypeFactory.getMediaType(filename)
+                            .map(MediaType::toString)
+                            .orElse(null);
+
+                    if (!isValidFileType(contentType)) {
+                        writer.reject(filename, "Unsupported file type");
+                        continue;
+                    }
+
+                    try {
+                        // Compressed size says nothing about the inflated size, enforce the limit while reading
+                        writer.add(documentService.storeFile(
+                                new SizeLimitedInputStream(zip, maxFileSize.toBytes(), EntryTooLargeException::new),
+                                filename, contentType));
+                    } catch (EntryTooLargeException e) {
+                        writer.reject(filename, "File exceeds " + maxFileSize);
+                    }
+                }
+            } catch (ArchiveTooLargeException e) {
+                if (!writer.hasWritten()) {
+                    // Nothing is sent yet, refuse the whole archive, files of the pending chunk get no rows
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+                }
+                // Results are already out, keep the files read so far and report why the rest is missing
+                writer.flush();
+                writer.reject(null, e.getMessage());
+            }
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> bulkResponse(DocumentPriority priority, String submitter,
+                                                               BulkUpload upload) {
+        String submitterKey = submitterKey(submitter);
+        StreamingResponseBody body = out -> {
+            BulkUploadWriter writer = new BulkUploadWriter(documentService, objectMapper, out, bulkChunkSize,
+                    priority, submitterKey);
+            upload.run(writer);
+            writer.flush();
+        };
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Stream status changes of the given documents as Server-Sent Events
+     * Sends the current status first, the stream ends once every document is COMPLETED or FAILED
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatus(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_SUBSCRIBED_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(statusNotifier.subscribe(ids));
+    }
+
     /**
      * Get document by ID
+     * Carries an ETag, a matching If-None-Match is answered 304 without a body
      */
     @GetMapping("/{id}")
     public ResponseEntity<DocumentResponse> getDocument(@PathVariable Long id) {
         return documentService.getDocumentById(id)
-                .map(ResponseEntity::ok)
+                .map(document -> ResponseEntity.ok().eTag(eTag(document)).body(document))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     /**
-     * List all documents
+     * List documents newest first, filtered and paginated
+     * Pass the X-Next-Cursor header of a response as cursor to get the next page
      */
     @GetMapping
-    public ResponseEntity<List<DocumentListResponse>> listDocuments() {
-        List<DocumentListResponse> documents = documentService.getAllDocuments();
-        return ResponseEntity.ok(documents);
+    public ResponseEntity<List<DocumentListResponse>> listDocuments(
+            @RequestParam(required = false) DocumentStatus status,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        DocumentPage page;
+        try {
+            page = documentService.listDocuments(status, documentType, createdFrom, createdTo, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor
+            return ResponseEntity.badRequest().build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Full-text search over the extracted text of COMPLETED documents, best match first
+     * Simple query syntax: words, "phrases", prefix*, +required, -excluded, a | b.
+     * X-Total-Count holds the number of matches, exact up to 1000
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<DocumentSearchHit>> searchDocuments(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        DocumentSearchIndex.SearchResult result;
+        try {
+            result = searchService.search(query, documentType, createdFrom, createdTo, offset, limit);
+        } catch (IllegalArgumentException e) {
+            // Paging past search.max-results
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, Long.toString(result.totalHits()))
+                .body(result.hits());
+    }
+
+    /**
+     * Everything in a DocumentResponse follows from its status and processing time
+     */
+    private static String eTag(DocumentResponse document) {
+        return "\"" + document.getId() + "-" + document.getStatus()
+                + (document.getProcessedAt() != null ? "-" + document.getProcessedAt() : "") + "\"";
+    }
+
+    private static String submitterKey(String submitter) {
+        if (submitter == null || submitter.isBlank()) {
+            return QueuedDocument.ANONYMOUS;
+        }
+        String trimmed = submitter.trim();
+        return trimmed.length() > MAX_SUBMITTER_LENGTH ? trimmed.substring(0, MAX_SUBMITTER_LENGTH) : trimmed;
     }
 
     private boolean isValidFileType(String contentType) {
@@ -70,4 +313,72 @@ public class DocumentController {
                         contentType.equals("application/pdf")
         );
     }
+
+    @FunctionalInterface
+    private interface BulkUpload {
+        void run(BulkUploadWriter writer) throws IOException;
+    }
+
+    /**
+     * Fails with the given exception once more than maxBytes have been read
+     * Closing does not close the underlying stream, so the next ZIP entry stays readable
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private final LongFunction<? extends IOException> tooLarge;
+        private long remaining;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes, LongFunction<? extends IOException> tooLarge) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.tooLarge = tooLarge;
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void count(int n) throws IOException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw tooLarge.apply(maxBytes);
+            }
+        }
+    }
+
+    private static class EntryTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        EntryTooLargeException(long maxBytes) {
+            super("Entry exceeds " + maxBytes + " bytes");
+        }
+    }
+
+    private static class ArchiveTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ArchiveTooLargeException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package com.samklas.document_ai_backend.controller;
+
+import com.samklas.document_ai_backend.service.PendingBacklog;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for uploads, rejects work the node cannot take on right now
+ * Checked before the multipart body is read, so a rejected upload costs no disk writes or buffers.
+ * Over the PENDING watermark answers 503, too many concurrent uploads or bytes in flight answer 429,
+ * both with Retry-After. Bulk responses stream after the filter returns, their permits are held
+ * until the async request completes.
+ */
+@Component
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionFilter.class);
+
+    private static final String UPLOAD_PATH = "/api/documents";
+
+    // Byte budget is kept in KiB so 2GB and more fit into int permits
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final PendingBacklog pendingBacklog;
+    private final Semaphore uploadPermits;
+    private final Semaphore bytePermits;
+    private final int totalBytePermits;
+    private final long maxPending;
+    private final long unknownLengthBytes;
+    private final long retryAfterSeconds;
+    private final long backlogRetryAfterSeconds;
+
+    public UploadAdmissionFilter(PendingBacklog pendingBacklog,
+                                 @Value("${upload.admission.max-concurrent:16}") int maxConcurrent,
+                                 @Value("${upload.admission.max-inflight-bytes:1GB}") DataSize maxInflightBytes,
+                                 @Value("${upload.admission.max-pending:10000}") long maxPending,
+                                 @Value("${spring.servlet.multipart.max-file-size:200MB}") DataSize unknownLength,
+                                 @Value("${upload.admission.retry-after-seconds:2}") long retryAfterSeconds,
+                                 @Value("${upload.admission.backlog-retry-after-seconds:30}") long backlogRetryAfterSeconds) {
+        this.pendingBacklog = pendingBacklog;
+        this.uploadPermits = new Semaphore(Math.max(maxConcurrent, 1));
+        this.totalBytePermits = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1, maxInflightBytes.toBytes() / BYTES_PER_PERMIT));
+        this.bytePermits = new Semaphore(totalBytePermits);
+        this.maxPending = maxPending;
+        this.unknownLengthBytes = unknownLength.toBytes();
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.backlogRetryAfterSeconds = backlogRetryAfterSeconds;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals(UPLOAD_PATH) || path.startsWith(UPLOAD_PATH + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long pending = pendingBacklog.pending();
+        if (maxPending > 0 && pending >= maxPending) {
+            logger.debug("Upload rejected, {} documents pending", pending);
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, backlogRetryAfterSeconds);
+            return;
+        }
+
+        if (!uploadPermits.tryAcquire()) {
+            logger.debug("Upload rejected, concurrent upload limit reached");
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+            return;
+        }
+
+        int bytes = bytePermits(request.getContentLengthLong());
+        if (!bytePermits.tryAcquire(bytes)) {
+            uploadPermits.release();
+            logger.debug("Upload rejected, in-flight upload bytes over budget");
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+            return;
+        }
+
+        Runnable release = releaseOnce(bytes);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    public int availableUploads() {
+        return uploadPermits.availablePermits();
+    }
+
+    public long availableBytes() {
+        return (long) bytePermits.availablePermits() * BYTES_PER_PERMIT;
+    }
+
+    /**
+     * Chunked requests do not say their size, they are charged as one file of the maximum size
+     * A request larger than the whole budget is charged the whole budget, so it can still run alone
+     */
+    private int bytePermits(long contentLength) {
+        long bytes = contentLength >= 0 ? contentLength : unknownLengthBytes;
+        long permits = (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+        return (int) Math.min(Math.max(permits, 1), totalBytePermits);
+    }
+
+    private Runnable releaseOnce(int bytes) {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                bytePermits.release(bytes);
+                uploadPermits.release();
+            }
+        };
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when async is restarted, register again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
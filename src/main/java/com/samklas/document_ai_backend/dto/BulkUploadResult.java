@@ -0,0 +1,67 @@
+package com.samklas.document_ai_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a bulk upload response, either the created document or the reason a file was rejected
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUploadResult {
+
+    private Long id;
+    private String filename;
+    private String status;
+    private String error;
+
+    // Constructors
+    public BulkUploadResult() {
+    }
+
+    public BulkUploadResult(Long id, String filename, String status, String error) {
+        this.id = id;
+        this.filename = filename;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BulkUploadResult stored(DocumentResponse document) {
+        return new BulkUploadResult(document.getId(), document.getFilename(), document.getStatus(), null);
+    }
+
+    public static BulkUploadResult rejected(String filename, String error) {
+        return new BulkUploadResult(null, filename, null, error);
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
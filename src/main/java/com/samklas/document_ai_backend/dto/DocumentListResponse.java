@@ -1,5 +1,7 @@
 package com.samklas.document_ai_backend.dto;
 
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+
 import java.time.LocalDateTime;
 
 public class DocumentListResponse {
@@ -23,6 +25,12 @@ public class DocumentListResponse {
         this.createdAt = createdAt;
     }
 
+    // Used by the repository's list projection
+    public DocumentListResponse(Long id, String filename, DocumentStatus status,
+                                String documentType, LocalDateTime createdAt) {
+        this(id, filename, status.name(), documentType, createdAt);
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -0,0 +1,35 @@
+package com.samklas.document_ai_backend.dto;
+
+import java.util.List;
+
+public class DocumentPage {
+
+    private List<DocumentListResponse> items;
+    private String nextCursor; // null on the last page
+
+    // Constructors
+    public DocumentPage() {
+    }
+
+    public DocumentPage(List<DocumentListResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<DocumentListResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<DocumentListResponse> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,68 @@
+package com.samklas.document_ai_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One full-text search result, answered from the search index
+ */
+public class DocumentSearchHit {
+
+    private Long id;
+    private String filename;
+    private String documentType;
+    private LocalDateTime createdAt;
+    private float score; // Relevance, only comparable within one query
+
+    // Constructors
+    public DocumentSearchHit() {
+    }
+
+    public DocumentSearchHit(Long id, String filename, String documentType, LocalDateTime createdAt, float score) {
+        this.id = id;
+        this.filename = filename;
+        this.documentType = documentType;
+        this.createdAt = createdAt;
+        this.score = score;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(String documentType) {
+        this.documentType = documentType;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+}
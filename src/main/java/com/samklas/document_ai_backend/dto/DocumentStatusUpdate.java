@@ -0,0 +1,53 @@
+package com.samklas.document_ai_backend.dto;
+
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+
+/**
+ * Status of one document as pushed to status subscribers
+ */
+public class DocumentStatusUpdate {
+
+    private Long id;
+    private String status;
+    private String documentType;
+
+    // Constructors
+    public DocumentStatusUpdate() {
+    }
+
+    public DocumentStatusUpdate(Long id, String status, String documentType) {
+        this.id = id;
+        this.status = status;
+        this.documentType = documentType;
+    }
+
+    // Used by the repository's status projection
+    public DocumentStatusUpdate(Long id, DocumentStatus status, String documentType) {
+        this(id, status.name(), documentType);
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(String documentType) {
+        this.documentType = documentType;
+    }
+}
@@ -1,21 +1,34 @@
 package com.samklas.document_ai_backend.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_documents_status_priority_created", columnList = "status, priority, created_at"),
+        @Index(name = "idx_documents_type_created", columnList = "document_type, created_at"),
+        @Index(name = "idx_documents_created", columnList = "created_at"),
+        @Index(name = "idx_documents_status_processed", columnList = "status, processed_at, id"),
+        @Index(name = "idx_documents_content_hash", columnList = "content_hash")
+})
 public class Document {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence, one round-trip per 50 ids and inserts can be JDBC batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "documents_seq")
+    @SequenceGenerator(name = "documents_seq", sequenceName = "documents_seq", allocationSize = Document.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
     private String filename;
 
     @Column(nullable = false)
-    private String filepath;
+    private String filepath; // DocumentStore key, a plain file path for documents stored before the sharded layout
 
     @Column(name = "content_type")
     private String contentType;
@@ -23,21 +36,43 @@ public class Document {
     @Column(name = "file_size")
     private Long fileSize;
 
-    @Column(nullable = false)
-    private String status; // PENDING, PROCESSING, COMPLETED, FAILED
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the stored bytes, hex
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private DocumentStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'INTERACTIVE'")
+    @Column(nullable = false, length = 16)
+    private DocumentPriority priority = DocumentPriority.INTERACTIVE;
+
+    @Column(length = 128)
+    private String submitter; // Fair share key, from the X-Submitter header
 
     @Column(name = "document_type")
     private String documentType; // INVOICE, CONTRACT, RECEIPT, etc.
 
-    @Column(name = "extracted_text", columnDefinition = "TEXT")
-    private String extractedText;
-
     @Column(name = "confidence_score")
     private Double confidenceScore;
 
     @Column(name = "error_message")
     private String errorMessage;
 
+    @Column(name = "lease_owner")
+    private String leaseOwner; // Node currently processing the document
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @ColumnDefault("0")
+    @Column(name = "retry_count", nullable = false)
+    private int retryCount; // Attempts that failed with a transient error
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt; // PENDING documents are not picked up before this
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
@@ -48,7 +83,7 @@ public class Document {
     public Document() {
     }
 
-    public Document(String filename, String filepath, String contentType, Long fileSize, String status) {
+    public Document(String filename, String filepath, String contentType, Long fileSize, DocumentStatus status) {
         this.filename = filename;
         this.filepath = filepath;
         this.contentType = contentType;
@@ -98,28 +133,44 @@ public class Document {
         this.fileSize = fileSize;
     }
 
-    public String getStatus() {
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public DocumentStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(DocumentStatus status) {
         this.status = status;
     }
 
-    public String getDocumentType() {
-        return documentType;
+    public DocumentPriority getPriority() {
+        return priority;
     }
 
-    public void setDocumentType(String documentType) {
-        this.documentType = documentType;
+    public void setPriority(DocumentPriority priority) {
+        this.priority = priority;
     }
 
-    public String getExtractedText() {
-        return extractedText;
+    public String getSubmitter() {
+        return submitter;
     }
 
-    public void setExtractedText(String extractedText) {
-        this.extractedText = extractedText;
+    public void setSubmitter(String submitter) {
+        this.submitter = submitter;
+    }
+
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(String documentType) {
+        this.documentType = documentType;
     }
 
     public Double getConfidenceScore() {
@@ -138,6 +189,38 @@ public class Document {
         this.errorMessage = errorMessage;
     }
 
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,9 @@
+package com.samklas.document_ai_backend.entity;
+
+/**
+ * Scheduling class of a document, chosen at upload
+ */
+public enum DocumentPriority {
+    INTERACTIVE,
+    BULK
+}
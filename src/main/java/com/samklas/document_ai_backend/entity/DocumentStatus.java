@@ -0,0 +1,12 @@
+package com.samklas.document_ai_backend.entity;
+
+/**
+ * Processing lifecycle of a document
+ * PENDING -> PROCESSING -> COMPLETED or FAILED
+ */
+public enum DocumentStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,85 @@
+package com.samklas.document_ai_backend.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * OCR output of a document, kept apart from the documents row
+ * Only loaded when a single document is read, never by status checks or listings
+ */
+@Entity
+@Table(name = "document_texts")
+public class DocumentText implements Persistable<Long> {
+
+    public enum Encoding {
+        PLAIN, // UTF-8
+        DEFLATE // Deflate compressed UTF-8
+    }
+
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Encoding encoding;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] content;
+
+    // Text is written once, lets save() insert without a select first
+    @Transient
+    private boolean isNew = true;
+
+    // Constructors
+    public DocumentText() {
+    }
+
+    public DocumentText(Long documentId, Encoding encoding, byte[] content) {
+        this.documentId = documentId;
+        this.encoding = encoding;
+        this.content = content;
+    }
+
+    @Override
+    public Long getId() {
+        return documentId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    // Getters and Setters
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+}
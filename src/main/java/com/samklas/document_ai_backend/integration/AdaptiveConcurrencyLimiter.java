@@ -0,0 +1,169 @@
+package com.samklas.document_ai_backend.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits concurrent ML service requests to what the service can currently handle
+ * Additive increase, multiplicative decrease: the limit grows by one per limit's worth of fast
+ * responses and shrinks when a request is dropped or the smoothed latency rises well above the
+ * baseline. The baseline is the lowest latency of the last window of samples, so it follows a
+ * service that gets slower for good. Latency lowers the limit at most once per limit's worth of
+ * responses, the requests already in flight saw the old limit.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final int BASELINE_WINDOW = 100;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private double smoothedNanos;
+    private int samplesSinceDecrease;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double latencyTolerance, Duration maxWait) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Wait up to maxWait for a permit
+     * Every successful acquire must be followed by exactly one of onSuccess, onDropped or onIgnored
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request answered, latency is per document for batch requests
+     */
+    public void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            updateBaseline(latencyNanos);
+            smoothedNanos = smoothedNanos == 0
+                    ? latencyNanos
+                    : smoothedNanos + SMOOTHING * (latencyNanos - smoothedNanos);
+            samplesSinceDecrease++;
+
+            if (smoothedNanos > baselineNanos * latencyTolerance) {
+                if (samplesSinceDecrease >= limit) {
+                    decrease();
+                }
+            } else if (inFlight * 2 >= limit) {
+                // Only grow while the limit is actually used, idle capacity proves nothing
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request timed out or was rejected as overloaded
+     */
+    public void onDropped() {
+        lock.lock();
+        try {
+            decrease();
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request ended without saying anything about the service's capacity
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        int before = (int) limit;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        samplesSinceDecrease = 0;
+        if ((int) limit < before) {
+            logger.debug("ML service concurrency limit lowered to {}", (int) limit);
+        }
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+
+        if (++windowSamples >= BASELINE_WINDOW) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        permitReleased.signalAll();
+    }
+}
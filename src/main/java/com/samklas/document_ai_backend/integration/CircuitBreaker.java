@@ -0,0 +1,160 @@
+package com.samklas.document_ai_backend.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to the ML service after repeated transient failures
+ * Opens after failureThreshold consecutive failures, lets a single trial call through once
+ * openDuration has passed, and closes again when that call succeeds.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Cheap check without taking the trial call, used before waiting for a concurrency permit
+     */
+    public boolean isCallPermitted() {
+        lock.lock();
+        try {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> nanoClock.getAsLong() - openedAt >= openDurationNanos;
+                case HALF_OPEN -> !trialInFlight;
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take permission for one call
+     * Every successful acquire must be followed by onSuccess, onFailure or onIgnored
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    trialInFlight = true;
+                    logger.info("ML service circuit half-open, sending trial request");
+                    return true;
+                default:
+                    if (trialInFlight) {
+                        return false;
+                    }
+                    trialInFlight = true;
+                    return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The call reached the ML service and got an answer, errors in the answer included
+     */
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (state != State.CLOSED) {
+                logger.info("ML service circuit closed");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The call failed in a way that says the ML service is down or overloaded
+     */
+    public void onFailure() {
+        lock.lock();
+        try {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                logger.warn("ML service circuit opened after {} consecutive failures", consecutiveFailures);
+                state = State.OPEN;
+                openedAt = nanoClock.getAsLong();
+            }
+            trialInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The call never reached the ML service, e.g. no pooled connection was free
+     * Says nothing about the service, only hands back a trial call
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            trialInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time until a trial call will be let through, zero when calls are permitted now
+     */
+    public Duration remainingOpenTime() {
+        lock.lock();
+        try {
+            if (state != State.OPEN) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos(Math.max(0, openDurationNanos - (nanoClock.getAsLong() - openedAt)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
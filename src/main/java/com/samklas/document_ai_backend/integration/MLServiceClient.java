@@ -1,5 +1,10 @@
 package com.samklas.document_ai_backend.integration;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,61 +13,174 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class MLServiceClient {
 
     private static final Logger logger = LoggerFactory.getLogger(MLServiceClient.class);
 
-    private final RestTemplate restTemplate;
+    // Tag value for calls without a single document type, failures and batches
+    private static final String NO_DOCUMENT_TYPE = "none";
+
+    // Document types are whatever the ML service returns, only known ones become tag values
+    private static final Set<String> KNOWN_DOCUMENT_TYPES = Set.of("INVOICE", "CONTRACT", "RECEIPT");
+    private static final String OTHER_DOCUMENT_TYPE = "other";
+
+    private final RestClient restClient;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final Meter.MeterProvider<Timer> requestTimer;
+    private final Counter circuitOpenRejections;
+    private final Counter concurrencyRejections;
 
     @Value("${ml.service.url:http://localhost:5000}")
     private String mlServiceUrl;
 
-    public MLServiceClient() {
-        this.restTemplate = new RestTemplate();
+    @Value("${ml.service.batch-path:/api/process/batch}")
+    private String batchPath;
+
+    public MLServiceClient(RestClient mlRestClient, CircuitBreaker mlCircuitBreaker,
+                           AdaptiveConcurrencyLimiter mlConcurrencyLimiter, MeterRegistry meterRegistry) {
+        // Pooled, keep-alive connections with timeouts, see MLClientConfig
+        this.restClient = mlRestClient;
+        this.circuitBreaker = mlCircuitBreaker;
+        this.concurrencyLimiter = mlConcurrencyLimiter;
+
+        this.requestTimer = Timer.builder("ml.requests")
+                .description("ML service calls that were sent, by request type, HTTP status and returned document type")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .withRegistry(meterRegistry);
+        this.circuitOpenRejections = Counter.builder("ml.requests.rejected")
+                .description("ML service calls not sent at all")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.concurrencyRejections = Counter.builder("ml.requests.rejected")
+                .description("ML service calls not sent at all")
+                .tag("reason", "concurrency_limit")
+                .register(meterRegistry);
+        meterRegistry.gauge("ml.concurrency.limit", mlConcurrencyLimiter, AdaptiveConcurrencyLimiter::limit);
     }
 
     /**
      * Send document to ML service for OCR and classification
      */
     public MLResponse processDocument(byte[] fileContent, String contentType) {
+        // Wrap file content as resource
+        Resource fileResource = new ByteArrayResource(fileContent);
+        return processDocument(fileResource, contentType);
+    }
+
+    /**
+     * Stream a stored file to ML service for OCR and classification
+     * The file is read from disk in chunks while the request is written, it is never loaded whole
+     */
+    public MLResponse processDocument(Path file, String contentType) {
+        return processDocument(new FileSystemResource(file), contentType);
+    }
+
+    /**
+     * Send several stored documents to ML service in one multipart request
+     * Results come back in input order, a document the ML service could not handle gets a result with an error
+     */
+    public List<BatchResult> processBatch(List<BatchItem> items) {
+        return guarded("batch", items.size(), () -> sendBatch(items), results -> NO_DOCUMENT_TYPE);
+    }
+
+    private List<BatchResult> sendBatch(List<BatchItem> items) {
 
         try {
-            String endpoint = mlServiceUrl + "/api/process";
+            String endpoint = mlServiceUrl + batchPath;
+
+            logger.debug("Calling ML service at: {} with {} documents", endpoint, items.size());
 
-            logger.info("Calling ML service at: {}", endpoint);
+            // One part per document, streamed from disk like single requests
+            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                BatchItem item = items.get(i);
+                body.add("files", filePart("files", item.content(), "document-" + i, item.contentType()));
+            }
+
+            ResponseEntity<BatchResponse> response = restClient.post()
+                    .uri(endpoint)
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(body)
+                    .retrieve()
+                    .toEntity(BatchResponse.class);
 
-            // Create multipart request
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+            if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null
+                    || response.getBody().getResults() == null) {
+                logger.error("ML service returned unexpected batch response: {}", response.getStatusCode());
+                throw new MLServiceException("ML service returned unexpected response");
+            }
 
-            // Wrap file content as resource
-            ByteArrayResource fileResource = new ByteArrayResource(fileContent) {
-                @Override
-                public String getFilename() {
-                    return "document"; // Filename for the multipart request
+            // Map results back by index, anything missing counts as failed
+            BatchResult[] ordered = new BatchResult[items.size()];
+            for (BatchResult result : response.getBody().getResults()) {
+                Integer index = result.getIndex();
+                if (index != null && index >= 0 && index < ordered.length) {
+                    ordered[index] = result;
                 }
-            };
+            }
+
+            List<BatchResult> results = new ArrayList<>(items.size());
+            for (int i = 0; i < ordered.length; i++) {
+                results.add(ordered[i] != null ? ordered[i] : BatchResult.failed(i, "No result returned for document"));
+            }
+            return results;
+
+        } catch (RestClientException e) {
+            logger.error("Error calling ML service", e);
+            throw communicationFailure(e);
+        }
+    }
+
+    /**
+     * Stream stored content to ML service for OCR and classification
+     * The content is read in chunks while the request is written, it is never loaded whole
+     */
+    public MLResponse processDocument(Resource fileResource, String contentType) {
+        return guarded("single", 1, () -> send(fileResource, contentType), MLServiceClient::documentTypeTag);
+    }
+
+    private MLResponse send(Resource fileResource, String contentType) {
+
+        try {
+            String endpoint = mlServiceUrl + "/api/process";
+
+            logger.debug("Calling ML service at: {}", endpoint);
 
             // Build multipart body
             MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", fileResource);
-
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+            body.add("file", filePart("file", fileResource, "document", contentType));
 
             // Call ML service
-            ResponseEntity<MLResponse> response = restTemplate.exchange(
-                    endpoint,
-                    HttpMethod.POST,
-                    requestEntity,
-                    MLResponse.class
-            );
+            ResponseEntity<MLResponse> response = restClient.post()
+                    .uri(endpoint)
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(body)
+                    .retrieve()
+                    .toEntity(MLResponse.class);
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                logger.info("ML service returned: documentType={}, confidence={}",
+                logger.debug("ML service returned: documentType={}, confidence={}",
                         response.getBody().getDocumentType(),
                         response.getBody().getConfidence());
                 return response.getBody();
@@ -75,7 +193,7 @@ public class MLServiceClient {
 
         } catch (RestClientException e) {
             logger.error("Error calling ML service", e);
-            throw new MLServiceException("Failed to communicate with ML service: " + e.getMessage(), e);
+            throw communicationFailure(e);
         }
 
         /*
@@ -90,6 +208,228 @@ public class MLServiceClient {
          */
     }
 
+    /**
+     * Run a request through the circuit breaker and the concurrency limit, timing requests that are sent
+     * Fails fast with MLServiceUnavailableException when the request is not sent at all
+     */
+    private <T> T guarded(String type, int documents, Supplier<T> request, Function<T, String> documentType) {
+        if (!circuitBreaker.isCallPermitted()) {
+            circuitOpenRejections.increment();
+            throw new MLServiceUnavailableException("ML service circuit is open", circuitBreaker.remainingOpenTime());
+        }
+
+        try {
+            if (!concurrencyLimiter.tryAcquire()) {
+                concurrencyRejections.increment();
+                throw new MLServiceUnavailableException("ML service concurrency limit reached", Duration.ZERO);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MLServiceUnavailableException("Interrupted waiting for the ML service", Duration.ZERO);
+        }
+
+        // Another request may have taken the half-open trial while this one waited
+        if (!circuitBreaker.tryAcquire()) {
+            concurrencyLimiter.onIgnored();
+            circuitOpenRejections.increment();
+            throw new MLServiceUnavailableException("ML service circuit is open", circuitBreaker.remainingOpenTime());
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = request.get();
+            long elapsed = System.nanoTime() - start;
+            circuitBreaker.onSuccess();
+            concurrencyLimiter.onSuccess(elapsed / Math.max(documents, 1));
+            record(type, "200", documentType.apply(result), elapsed);
+            return result;
+
+        } catch (MLServiceUnavailableException e) {
+            // No pooled connection came free, local starvation says nothing about the service
+            record(type, "POOL_TIMEOUT", NO_DOCUMENT_TYPE, System.nanoTime() - start);
+            circuitBreaker.onIgnored();
+            concurrencyLimiter.onIgnored();
+            throw e;
+
+        } catch (MLServiceException e) {
+            record(type, statusTag(e), NO_DOCUMENT_TYPE, System.nanoTime() - start);
+            if (e.isRetryable()) {
+                circuitBreaker.onFailure();
+                concurrencyLimiter.onDropped();
+            } else {
+                // The service answered, it is up
+                circuitBreaker.onSuccess();
+                concurrencyLimiter.onIgnored();
+            }
+            throw e;
+
+        } catch (RuntimeException e) {
+            record(type, "ERROR", NO_DOCUMENT_TYPE, System.nanoTime() - start);
+            circuitBreaker.onFailure();
+            concurrencyLimiter.onDropped();
+            throw e;
+        }
+    }
+
+    private void record(String type, String status, String documentType, long elapsedNanos) {
+        requestTimer.withTags("type", type, "status", status, "documentType", documentType)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * HTTP status of a failed call, IO_ERROR when there was no answer
+     */
+    private static String statusTag(MLServiceException e) {
+        if (e.getCause() instanceof RestClientResponseException response) {
+            return Integer.toString(response.getStatusCode().value());
+        }
+        if (e.getCause() instanceof ResourceAccessException) {
+            return "IO_ERROR";
+        }
+        return "UNEXPECTED";
+    }
+
+    private static String documentTypeTag(MLResponse response) {
+        if (response.getDocumentType() == null) {
+            return NO_DOCUMENT_TYPE;
+        }
+        return KNOWN_DOCUMENT_TYPES.contains(response.getDocumentType()) ? response.getDocumentType() : OTHER_DOCUMENT_TYPE;
+    }
+
+    /**
+     * Connection problems, timeouts and overload answers are worth retrying, anything else is not
+     * Waiting too long for a pooled connection means the request was never sent
+     */
+    private static MLServiceException communicationFailure(RestClientException e) {
+        if (e.getRootCause() instanceof ConnectionRequestTimeoutException) {
+            return new MLServiceUnavailableException("No ML service connection available: " + e.getMessage(),
+                    Duration.ZERO);
+        }
+        boolean retryable = e instanceof ResourceAccessException
+                || (e instanceof RestClientResponseException response && isTransient(response.getStatusCode()));
+        return new MLServiceException("Failed to communicate with ML service: " + e.getMessage(), e, retryable);
+    }
+
+    /**
+     * Any server error or rate limit answer, other client errors are down to the request itself
+     */
+    private static boolean isTransient(HttpStatusCode status) {
+        return status.is5xxServerError() || status.value() == 429;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    public int concurrencyLimit() {
+        return concurrencyLimiter.limit();
+    }
+
+    /**
+     * File part carries the original content type, under a neutral filename
+     */
+    private static HttpEntity<Resource> filePart(String name, Resource fileResource, String partFilename,
+                                                 String contentType) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentDisposition(ContentDisposition.formData().name(name).filename(partFilename).build());
+        if (contentType != null) {
+            partHeaders.setContentType(MediaType.parseMediaType(contentType));
+        }
+        return new HttpEntity<>(fileResource, partHeaders);
+    }
+
+    /**
+     * One document of a batch request
+     */
+    public record BatchItem(Resource content, String contentType) {
+
+        public BatchItem(Path file, String contentType) {
+            this(new FileSystemResource(file), contentType);
+        }
+    }
+
+    /**
+     * Batch response object from ML service
+     */
+    public static class BatchResponse {
+        private List<BatchResult> results;
+
+        public List<BatchResult> getResults() {
+            return results;
+        }
+
+        public void setResults(List<BatchResult> results) {
+            this.results = results;
+        }
+    }
+
+    /**
+     * Result for one document of a batch, either OCR output or an error
+     */
+    public static class BatchResult {
+        private Integer index;
+        private String extractedText;
+        private String documentType;
+        private Double confidence;
+        private String error;
+
+        // Constructors
+        public BatchResult() {
+        }
+
+        public static BatchResult failed(int index, String error) {
+            BatchResult result = new BatchResult();
+            result.setIndex(index);
+            result.setError(error);
+            return result;
+        }
+
+        public MLResponse toResponse() {
+            return new MLResponse(extractedText, documentType, confidence);
+        }
+
+        // Getters and Setters
+        public Integer getIndex() {
+            return index;
+        }
+
+        public void setIndex(Integer index) {
+            this.index = index;
+        }
+
+        public String getExtractedText() {
+            return extractedText;
+        }
+
+        public void setExtractedText(String extractedText) {
+            this.extractedText = extractedText;
+        }
+
+        public String getDocumentType() {
+            return documentType;
+        }
+
+        public void setDocumentType(String documentType) {
+            this.documentType = documentType;
+        }
+
+        public Double getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(Double confidence) {
+            this.confidence = confidence;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+
     /**
      * Response object from ML service
      */
@@ -136,14 +476,46 @@ public class MLServiceClient {
 
     /**
      * Custom exception for ML service errors
+     * Retryable errors are transient, the same request may succeed later
      */
     public static class MLServiceException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean retryable;
+
         public MLServiceException(String message) {
-            super(message);
+            this(message, null, false);
         }
 
         public MLServiceException(String message, Throwable cause) {
+            this(message, cause, false);
+        }
+
+        public MLServiceException(String message, Throwable cause, boolean retryable) {
             super(message, cause);
+            this.retryable = retryable;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+    }
+
+    /**
+     * The request was not sent, the circuit is open, the concurrency limit stayed full or no pooled connection came free
+     */
+    public static class MLServiceUnavailableException extends MLServiceException {
+        private static final long serialVersionUID = 1L;
+
+        private final Duration retryAfter;
+
+        public MLServiceUnavailableException(String message, Duration retryAfter) {
+            super(message, null, true);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
         }
     }
 }
\ No newline at end of file
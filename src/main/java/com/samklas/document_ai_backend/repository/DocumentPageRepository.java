@@ -0,0 +1,23 @@
+package com.samklas.document_ai_backend.repository;
+
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Document list query built from only the filters that are set
+ */
+public interface DocumentPageRepository {
+
+    /**
+     * Page of documents for listing, newest first
+     * Keyset pagination on (createdAt, id), only the list columns are selected. Null filters are left
+     * out of the query, so a status or type filter is answered from its (column, created_at) index.
+     * Pass the createdAt and id of the last row of the previous page to get the next one.
+     */
+    List<DocumentListResponse> findPage(DocumentStatus status, String documentType,
+                                        LocalDateTime createdFrom, LocalDateTime createdTo,
+                                        LocalDateTime beforeCreatedAt, Long beforeId, int limit);
+}
@@ -0,0 +1,59 @@
+package com.samklas.document_ai_backend.repository;
+
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class DocumentPageRepositoryImpl implements DocumentPageRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DocumentListResponse> findPage(DocumentStatus status, String documentType,
+                                               LocalDateTime createdFrom, LocalDateTime createdTo,
+                                               LocalDateTime beforeCreatedAt, Long beforeId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DocumentListResponse> query = cb.createQuery(DocumentListResponse.class);
+        Root<Document> d = query.from(Document.class);
+        Path<LocalDateTime> createdAt = d.get("createdAt");
+        Path<Long> id = d.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (status != null) {
+            predicates.add(cb.equal(d.get("status"), status));
+        }
+        if (documentType != null) {
+            predicates.add(cb.equal(d.get("documentType"), documentType));
+        }
+        if (createdFrom != null) {
+            predicates.add(cb.greaterThanOrEqualTo(createdAt, createdFrom));
+        }
+        if (createdTo != null) {
+            predicates.add(cb.lessThan(createdAt, createdTo));
+        }
+        if (beforeCreatedAt != null && beforeId != null) {
+            // The <= bound is what lets the index range scan start at the cursor, the rest breaks ties on id
+            predicates.add(cb.lessThanOrEqualTo(createdAt, beforeCreatedAt));
+            predicates.add(cb.or(cb.lessThan(createdAt, beforeCreatedAt), cb.lessThan(id, beforeId)));
+        }
+
+        query.select(cb.construct(DocumentListResponse.class,
+                        id, d.get("filename"), d.get("status"), d.get("documentType"), createdAt))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.desc(createdAt), cb.desc(id));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -1,23 +1,158 @@
 package com.samklas.document_ai_backend.repository;
 
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.dto.DocumentStatusUpdate;
 import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.service.CompletedDocument;
+import com.samklas.document_ai_backend.service.QueuedDocument;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<Document, Long> {
+public interface DocumentRepository extends JpaRepository<Document, Long>, DocumentPageRepository {
+
+    // Enum literals for JPQL
+    String PENDING = "com.samklas.document_ai_backend.entity.DocumentStatus.PENDING";
+    String PROCESSING = "com.samklas.document_ai_backend.entity.DocumentStatus.PROCESSING";
+    String COMPLETED = "com.samklas.document_ai_backend.entity.DocumentStatus.COMPLETED";
+    String FAILED = "com.samklas.document_ai_backend.entity.DocumentStatus.FAILED";
 
     /**
      * Find all documents by status
-     * Used by scheduled task to find PENDING documents
      */
-    List<Document> findByStatus(String status);
+    List<Document> findByStatus(DocumentStatus status);
+
+    /**
+     * Count documents by status, answered from the (status, created_at) index
+     */
+    long countByStatus(DocumentStatus status);
+
+    /**
+     * Find PENDING documents of one priority class that are due, oldest first
+     * Used by scheduled task, skips documents waiting out a retry backoff.
+     * Answered from the (status, priority, created_at) index
+     */
+    @Query("select new com.samklas.document_ai_backend.service.QueuedDocument(" +
+            "d.id, d.priority, d.submitter, d.createdAt) " +
+            "from Document d where d.status = " + PENDING + " and d.priority = :priority " +
+            "and (d.nextAttemptAt is null or d.nextAttemptAt <= :now) order by d.createdAt")
+    List<QueuedDocument> findDue(@Param("priority") DocumentPriority priority, @Param("now") LocalDateTime now,
+                                 Limit limit);
 
     /**
      * Find documents by document type
      * Useful for filtering/searching
      */
     List<Document> findByDocumentType(String documentType);
+
+    /**
+     * Current status of the given documents, without loading the entities
+     */
+    @Query("select new com.samklas.document_ai_backend.dto.DocumentStatusUpdate(d.id, d.status, d.documentType) " +
+            "from Document d where d.id in :ids")
+    List<DocumentStatusUpdate> findStatuses(@Param("ids") Collection<Long> ids);
+
+    /**
+     * COMPLETED documents in processing order, for building the search index
+     * Keyset pagination on (processedAt, id), starting with processedFrom.
+     * Answered from the (status, processed_at, id) index
+     */
+    @Query("select new com.samklas.document_ai_backend.service.CompletedDocument(" +
+            "d.id, d.filename, d.status, d.documentType, d.createdAt, d.processedAt) " +
+            "from Document d where d.status = " + COMPLETED + " " +
+            "and d.processedAt >= :processedFrom and (d.processedAt > :processedFrom or d.id > :afterId) " +
+            "order by d.processedAt, d.id")
+    List<CompletedDocument> findCompletedAfter(@Param("processedFrom") LocalDateTime processedFrom,
+                                               @Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * The given documents that are COMPLETED, as list items
+     */
+    @Query("select new com.samklas.document_ai_backend.dto.DocumentListResponse(" +
+            "d.id, d.filename, d.status, d.documentType, d.createdAt) " +
+            "from Document d where d.id in :ids and d.status = " + COMPLETED)
+    List<DocumentListResponse> findCompleted(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Find a document with identical content in the given status
+     */
+    Optional<Document> findFirstByContentHashAndStatus(String contentHash, DocumentStatus status);
+
+    /**
+     * Atomically move a PENDING document to PROCESSING under a lease
+     * Returns 0 if the document is gone or another worker claimed it first
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + PROCESSING + ", d.leaseOwner = :owner, d.leaseExpiresAt = :expiresAt " +
+            "where d.id = :id and d.status = " + PENDING)
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Store an OCR result and release the lease, only if the given node still holds it
+     * Returns 0 if the lease was lost
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + COMPLETED + ", d.documentType = :documentType, " +
+            "d.confidenceScore = :confidence, d.processedAt = :processedAt, " +
+            "d.leaseOwner = null, d.leaseExpiresAt = null " +
+            "where d.id = :id and d.status = " + PROCESSING + " and d.leaseOwner = :owner")
+    int markCompleted(@Param("id") Long id, @Param("owner") String owner,
+                      @Param("documentType") String documentType, @Param("confidence") Double confidence,
+                      @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * Mark a document FAILED and release the lease, only if the given node still holds it
+     * Returns 0 if the lease was lost
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + FAILED + ", d.errorMessage = :errorMessage, " +
+            "d.leaseOwner = null, d.leaseExpiresAt = null " +
+            "where d.id = :id and d.status = " + PROCESSING + " and d.leaseOwner = :owner")
+    int markFailed(@Param("id") Long id, @Param("owner") String owner, @Param("errorMessage") String errorMessage);
+
+    /**
+     * Put a document back to PENDING for another attempt, only if the given node still holds the lease
+     * Returns 0 if the lease was lost
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + PENDING + ", d.retryCount = :retryCount, " +
+            "d.nextAttemptAt = :nextAttemptAt, d.errorMessage = :errorMessage, " +
+            "d.leaseOwner = null, d.leaseExpiresAt = null " +
+            "where d.id = :id and d.status = " + PROCESSING + " and d.leaseOwner = :owner")
+    int reschedule(@Param("id") Long id, @Param("owner") String owner, @Param("retryCount") int retryCount,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("errorMessage") String errorMessage);
+
+    /**
+     * Return PROCESSING documents with an expired or missing lease to PENDING, counting the lost attempt
+     * Recovers documents left behind by a crashed node. Documents on their last attempt are left to failExpiredLeases
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + PENDING + ", d.retryCount = d.retryCount + 1, " +
+            "d.leaseOwner = null, d.leaseExpiresAt = null " +
+            "where d.status = " + PROCESSING + " and (d.leaseExpiresAt is null or d.leaseExpiresAt < :now) " +
+            "and d.retryCount + 1 < :maxAttempts")
+    int releaseExpiredLeases(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Mark PROCESSING documents with an expired or missing lease FAILED once they used up their attempts
+     * Stops a document that takes its node down with it from being picked up forever
+     */
+    @Modifying
+    @Query("update Document d set d.status = " + FAILED + ", d.retryCount = d.retryCount + 1, " +
+            "d.errorMessage = :errorMessage, d.leaseOwner = null, d.leaseExpiresAt = null " +
+            "where d.status = " + PROCESSING + " and (d.leaseExpiresAt is null or d.leaseExpiresAt < :now) " +
+            "and d.retryCount + 1 >= :maxAttempts")
+    int failExpiredLeases(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                          @Param("errorMessage") String errorMessage);
 }
@@ -0,0 +1,9 @@
+package com.samklas.document_ai_backend.repository;
+
+import com.samklas.document_ai_backend.entity.DocumentText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+}
@@ -0,0 +1,205 @@
+package com.samklas.document_ai_backend.search;
+
+import com.samklas.document_ai_backend.dto.DocumentSearchHit;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lucene full-text index over the extracted text of COMPLETED documents
+ * Holds the list fields as well, so a search is answered without touching the database. The text
+ * itself is indexed but not stored, it stays in document_texts. Changes become searchable on
+ * refresh() and durable on commit(), the index can always be rebuilt from the database.
+ */
+public class DocumentSearchIndex implements Closeable {
+
+    // Commit user data, every document completed before this time is in the commit
+    private static final String INDEXED_UP_TO = "indexedUpTo";
+
+    private static final String ID = "id";
+    private static final String FILENAME = "filename";
+    private static final String DOCUMENT_TYPE = "documentType";
+    private static final String CREATED_AT = "createdAt";
+    private static final String TEXT = "text";
+
+    // Filename matches count, but less than matches in the text
+    private static final Map<String, Float> SEARCHED_FIELDS = Map.of(TEXT, 1.0f, FILENAME, 0.5f);
+
+    private final Directory directory;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public DocumentSearchIndex(Path path) throws IOException {
+        Files.createDirectories(path);
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Add a document or replace its earlier entry
+     */
+    public void index(Long id, String filename, String documentType, LocalDateTime createdAt, String text)
+            throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, id.toString(), Field.Store.YES));
+        document.add(new TextField(FILENAME, filename, Field.Store.YES));
+        if (documentType != null) {
+            document.add(new StringField(DOCUMENT_TYPE, documentType, Field.Store.YES));
+        }
+        long createdAtMillis = toMillis(createdAt);
+        document.add(new LongPoint(CREATED_AT, createdAtMillis));
+        document.add(new StoredField(CREATED_AT, createdAtMillis));
+        if (text != null) {
+            document.add(new TextField(TEXT, text, Field.Store.NO));
+        }
+
+        writer.updateDocument(new Term(ID, id.toString()), document);
+    }
+
+    /**
+     * Drop every entry, not visible to searches until the next refresh
+     */
+    public void deleteAll() throws IOException {
+        writer.deleteAll();
+    }
+
+    /**
+     * Make changes since the last refresh searchable
+     */
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Make changes durable, recording that documents completed before indexedUpTo are all in
+     */
+    public void commit(LocalDateTime indexedUpTo) throws IOException {
+        writer.setLiveCommitData(Map.of(INDEXED_UP_TO, indexedUpTo.toString()).entrySet());
+        writer.commit();
+    }
+
+    /**
+     * indexedUpTo of the last commit, null if there is no committed index to build on
+     */
+    public LocalDateTime indexedUpTo() throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return null;
+        }
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            String indexedUpTo = reader.getIndexCommit().getUserData().get(INDEXED_UP_TO);
+            return indexedUpTo == null ? null : LocalDateTime.parse(indexedUpTo);
+        }
+    }
+
+    /**
+     * Ranked search, best match first
+     * The query uses simple syntax: words, "phrases", prefix*, +required, -excluded, a | b.
+     * Type and creation time only filter, they do not change the ranking.
+     */
+    public SearchResult search(String query, String documentType, LocalDateTime createdFrom,
+                               LocalDateTime createdTo, int offset, int limit) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        Query textQuery = new SimpleQueryParser(analyzer, SEARCHED_FIELDS).parse(query);
+        if (textQuery == null) {
+            // Nothing searchable left after analysis, e.g. only punctuation
+            return new SearchResult(0, List.of());
+        }
+        builder.add(textQuery, BooleanClause.Occur.MUST);
+
+        if (documentType != null) {
+            builder.add(new TermQuery(new Term(DOCUMENT_TYPE, documentType)), BooleanClause.Occur.FILTER);
+        }
+        if (createdFrom != null || createdTo != null) {
+            long from = createdFrom == null ? Long.MIN_VALUE : toMillis(createdFrom);
+            long to = createdTo == null ? Long.MAX_VALUE : toMillis(createdTo) - 1;
+            builder.add(LongPoint.newRangeQuery(CREATED_AT, from, to), BooleanClause.Occur.FILTER);
+        }
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(builder.build(), offset + limit);
+            StoredFields storedFields = searcher.storedFields();
+
+            List<DocumentSearchHit> hits = new ArrayList<>(Math.max(0, topDocs.scoreDocs.length - offset));
+            for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                Document document = storedFields.document(scoreDoc.doc);
+                hits.add(new DocumentSearchHit(
+                        Long.valueOf(document.get(ID)),
+                        document.get(FILENAME),
+                        document.get(DOCUMENT_TYPE),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(
+                                document.getField(CREATED_AT).numericValue().longValue()), ZoneOffset.UTC),
+                        scoreDoc.score));
+            }
+            return new SearchResult(topDocs.totalHits.value, hits);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Number of indexed documents as of the last refresh
+     */
+    public int size() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * One page of hits
+     * totalHits is exact up to 1000 matches, above that a lower bound
+     */
+    public record SearchResult(long totalHits, List<DocumentSearchHit> hits) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * A COMPLETED document as the search index sees it, processedAt and id are the keyset for paging through them
+ */
+public record CompletedDocument(Long id, String filename, DocumentStatus status, String documentType,
+                                LocalDateTime createdAt, LocalDateTime processedAt) {
+
+    public DocumentListResponse listItem() {
+        return new DocumentListResponse(id, filename, status, documentType, createdAt);
+    }
+}
@@ -0,0 +1,348 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.integration.MLServiceClient;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a single document through OCR
+ * Each state change is its own short transaction, no transaction is held open during the ML call.
+ * A document is claimed under a lease so several nodes can share the same database safely.
+ * Every status change is published as a DocumentStatusChangedEvent, delivered after commit.
+ * Transient ML service errors put the document back to PENDING with a jittered exponential backoff,
+ * it is only FAILED once ml.resilience.retry.max-attempts is used up.
+ */
+@Service
+public class DocumentProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentProcessor.class);
+
+    private final DocumentRepository documentRepository;
+    private final MLServiceClient mlServiceClient;
+    private final OcrResultCache ocrResultCache;
+    private final DocumentTextStore documentTextStore;
+    private final ImagePreprocessor imagePreprocessor;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+    private final Duration leaseDuration;
+
+    private final Timer completionTimer;
+    private final Counter unavailableRetries;
+    private final Counter transientRetries;
+    private final Counter failures;
+
+    @Value("${ml.resilience.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${ml.resilience.retry.base-delay-ms:2000}")
+    private long retryBaseDelayMs;
+
+    @Value("${ml.resilience.retry.max-delay-ms:300000}")
+    private long retryMaxDelayMs;
+
+    public DocumentProcessor(DocumentRepository documentRepository, MLServiceClient mlServiceClient,
+                             OcrResultCache ocrResultCache, DocumentTextStore documentTextStore,
+                             ImagePreprocessor imagePreprocessor, PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${processing.node-id:}") String nodeId,
+                             @Value("${processing.lease-duration-ms:300000}") long leaseDurationMs,
+                             MeterRegistry meterRegistry) {
+        this.documentRepository = documentRepository;
+        this.mlServiceClient = mlServiceClient;
+        this.ocrResultCache = ocrResultCache;
+        this.documentTextStore = documentTextStore;
+        this.imagePreprocessor = imagePreprocessor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.leaseDuration = Duration.ofMillis(leaseDurationMs);
+
+        this.completionTimer = Timer.builder("documents.completion")
+                .description("Upload to COMPLETED, including queueing, retries and the ML call")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(100))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+        this.unavailableRetries = Counter.builder("documents.retries")
+                .description("Documents put back to PENDING for another attempt")
+                .tag("reason", "unavailable")
+                .register(meterRegistry);
+        this.transientRetries = Counter.builder("documents.retries")
+                .description("Documents put back to PENDING for another attempt")
+                .tag("reason", "transient_error")
+                .register(meterRegistry);
+        this.failures = Counter.builder("documents.failed")
+                .description("Documents marked FAILED")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claim, process and store the result of one document
+     */
+    public void process(Long documentId) {
+        ClaimedDocument claimed = claim(documentId);
+        if (claimed == null || completeFromCache(documentId, claimed)) {
+            return;
+        }
+
+        try {
+            logger.debug("Processing document ID: {}", documentId);
+
+            // Streamed from the store, the file is never held in memory
+            MLServiceClient.MLResponse mlResponse = mlServiceClient.processDocument(
+                    imagePreprocessor.prepare(claimed.filepath(), claimed.contentType()),
+                    claimed.contentType()
+            );
+            ocrResultCache.put(claimed.contentHash(), mlResponse);
+
+            complete(claimed, mlResponse);
+
+        } catch (Exception e) {
+            handleFailure(claimed, e);
+        }
+    }
+
+    /**
+     * Claim several documents and send them to the ML service in one request
+     * Per-document errors only fail that document, a failed request fails the whole batch.
+     * If claiming stops partway, the documents claimed so far are released before the error is rethrown.
+     */
+    public void processBatch(List<Long> documentIds) {
+        List<Long> batchIds = new ArrayList<>();
+        List<ClaimedDocument> batchDocs = new ArrayList<>();
+
+        ClaimedDocument claiming = null;
+        try {
+            for (Long documentId : documentIds) {
+                claiming = claim(documentId);
+                if (claiming != null && !completeFromCache(documentId, claiming)) {
+                    batchIds.add(documentId);
+                    batchDocs.add(claiming);
+                }
+                claiming = null;
+            }
+        } catch (RuntimeException e) {
+            // Claimed before the error hit, e.g. its cached result could not be stored
+            if (claiming != null) {
+                batchDocs.add(claiming);
+            }
+            release(batchDocs, e);
+            throw e;
+        }
+
+        if (batchIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            logger.debug("Processing batch of {} documents: {}", batchIds.size(), batchIds);
+
+            List<MLServiceClient.BatchItem> items = batchDocs.stream()
+                    .map(claimed -> new MLServiceClient.BatchItem(
+                            imagePreprocessor.prepare(claimed.filepath(), claimed.contentType()), claimed.contentType()))
+                    .toList();
+
+            List<MLServiceClient.BatchResult> results = mlServiceClient.processBatch(items);
+
+            // All results of the batch are written back in one transaction
+            transactionTemplate.executeWithoutResult(tx -> {
+                for (int i = 0; i < batchIds.size(); i++) {
+                    MLServiceClient.BatchResult result = results.get(i);
+
+                    if (result.getError() != null) {
+                        logger.warn("ML service failed document ID {}: {}", batchIds.get(i), result.getError());
+                        writeFailed(batchIds.get(i), result.getError());
+                    } else {
+                        ocrResultCache.put(batchDocs.get(i).contentHash(), result.toResponse());
+                        writeCompleted(batchDocs.get(i), result.toResponse());
+                    }
+                }
+            });
+
+        } catch (Exception e) {
+            for (int i = 0; i < batchIds.size(); i++) {
+                handleFailure(batchDocs.get(i), e);
+            }
+        }
+    }
+
+    /**
+     * Retry transient errors later, fail the document on anything else
+     * A request that was never sent (circuit open, no concurrency permit) does not count as an attempt
+     */
+    private void handleFailure(ClaimedDocument claimed, Exception e) {
+        Long documentId = claimed.queued().id();
+        int retryCount = claimed.retryCount();
+
+        if (e instanceof MLServiceClient.MLServiceUnavailableException unavailable) {
+            logger.info("ML service unavailable, document ID {} parked: {}", documentId, e.getMessage());
+            Duration delay = jittered(Math.max(unavailable.getRetryAfter().toMillis(), retryBaseDelayMs));
+            reschedule(claimed.queued(), retryCount, delay, e.getMessage());
+            unavailableRetries.increment();
+
+        } else if (e instanceof MLServiceClient.MLServiceException mlError && mlError.isRetryable()
+                && retryCount + 1 < maxAttempts) {
+            Duration delay = jittered(Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(retryCount, 20)));
+            logger.warn("Transient error processing document ID {}, retry {} in {} ms: {}",
+                    documentId, retryCount + 1, delay.toMillis(), e.getMessage());
+            reschedule(claimed.queued(), retryCount + 1, delay, e.getMessage());
+            transientRetries.increment();
+
+        } else {
+            logger.error("Error processing document ID: {}", documentId, e);
+            fail(documentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Put claimed documents back to PENDING, nothing was sent for them so no attempt is counted
+     * A document that cannot be released waits for its lease to expire
+     */
+    private void release(List<ClaimedDocument> claimedDocs, Exception cause) {
+        for (ClaimedDocument claimed : claimedDocs) {
+            try {
+                reschedule(claimed.queued(), claimed.retryCount(), jittered(retryBaseDelayMs), cause.getMessage());
+            } catch (RuntimeException e) {
+                logger.warn("Could not release document ID {}, left to the lease reaper: {}",
+                        claimed.queued().id(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Somewhere between half and all of the delay, so parked documents do not all come back at once
+     */
+    private static Duration jittered(long delayMs) {
+        long half = Math.max(delayMs / 2, 1);
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half));
+    }
+
+    /**
+     * Complete a claimed document from an earlier result for identical content
+     * Covers duplicates uploaded while the original was still in flight
+     */
+    private boolean completeFromCache(Long documentId, ClaimedDocument claimed) {
+        Optional<MLServiceClient.MLResponse> cached = ocrResultCache.find(claimed.contentHash());
+
+        if (cached.isEmpty()) {
+            return false;
+        }
+
+        logger.debug("Reusing OCR result of identical content for document ID: {}", documentId);
+        complete(claimed, cached.get());
+        return true;
+    }
+
+    /**
+     * Move a PENDING document to PROCESSING under this node's lease
+     * Returns null if the document is gone or was claimed elsewhere
+     */
+    private ClaimedDocument claim(Long documentId) {
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime leaseExpiresAt = LocalDateTime.now().plus(leaseDuration);
+
+            // Conditional update, only one worker across all nodes can win
+            if (documentRepository.claim(documentId, nodeId, leaseExpiresAt) == 0) {
+                return null;
+            }
+            eventPublisher.publishEvent(new DocumentStatusChangedEvent(documentId, DocumentStatus.PROCESSING, null));
+
+            return documentRepository.findById(documentId)
+                    .map(document -> new ClaimedDocument(
+                            document.getFilepath(),
+                            document.getContentType(),
+                            document.getContentHash(),
+                            document.getRetryCount(),
+                            new QueuedDocument(documentId, document.getPriority(),
+                                    document.getSubmitter(), document.getCreatedAt())
+                    ))
+                    .orElse(null);
+        });
+    }
+
+    private void complete(ClaimedDocument claimed, MLServiceClient.MLResponse mlResponse) {
+        transactionTemplate.executeWithoutResult(tx -> writeCompleted(claimed, mlResponse));
+    }
+
+    private void fail(Long documentId, String errorMessage) {
+        transactionTemplate.executeWithoutResult(tx -> writeFailed(documentId, errorMessage));
+    }
+
+    private void reschedule(QueuedDocument document, int retryCount, Duration delay, String errorMessage) {
+        Long documentId = document.id();
+        transactionTemplate.executeWithoutResult(tx -> {
+            LocalDateTime nextAttemptAt = LocalDateTime.now().plus(delay);
+
+            if (documentRepository.reschedule(documentId, nodeId, retryCount, nextAttemptAt, errorMessage) == 0) {
+                logger.warn("Lease on document ID {} was lost, discarding retry", documentId);
+                return;
+            }
+            eventPublisher.publishEvent(new DocumentStatusChangedEvent(documentId, DocumentStatus.PENDING, null));
+            eventPublisher.publishEvent(new DocumentRetryScheduledEvent(document, delay));
+        });
+    }
+
+    /**
+     * Store the result if this node still holds the lease, joins the caller's transaction
+     * An expired lease may already have been reaped and handed to another worker
+     */
+    private void writeCompleted(ClaimedDocument claimed, MLServiceClient.MLResponse mlResponse) {
+        Long documentId = claimed.queued().id();
+        int updated = documentRepository.markCompleted(documentId, nodeId, mlResponse.getDocumentType(),
+                mlResponse.getConfidence(), LocalDateTime.now());
+
+        if (updated == 0) {
+            logger.warn("Lease on document ID {} was lost, discarding result", documentId);
+            return;
+        }
+        documentTextStore.save(documentId, mlResponse.getExtractedText());
+        eventPublisher.publishEvent(new DocumentStatusChangedEvent(
+                documentId, DocumentStatus.COMPLETED, mlResponse.getDocumentType()));
+        if (claimed.queued().createdAt() != null) {
+            completionTimer.record(Duration.between(claimed.queued().createdAt(), LocalDateTime.now()));
+        }
+    }
+
+    private void writeFailed(Long documentId, String errorMessage) {
+        if (documentRepository.markFailed(documentId, nodeId, errorMessage) == 0) {
+            logger.warn("Lease on document ID {} was lost, discarding error", documentId);
+            return;
+        }
+        failures.increment();
+        eventPublisher.publishEvent(new DocumentStatusChangedEvent(documentId, DocumentStatus.FAILED, null));
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    private record ClaimedDocument(String filepath, String contentType, String contentHash, int retryCount,
+                                   QueuedDocument queued) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.samklas.document_ai_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.samklas.document_ai_backend.dto.DocumentResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Single document responses keyed by id, bounded by total extracted text size
+ * COMPLETED and FAILED documents never change again and are kept for terminal-ttl-ms. Anything still
+ * in progress expires after active-ttl-ms, which bounds how stale it can get when the change happened
+ * on another node or raced with a read. Local status changes evict the entry once committed.
+ */
+@Component
+public class DocumentResponseCache {
+
+    // Weight of an entry without text, also caps the entry count at max-text-chars / ENTRY_OVERHEAD
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<Long, DocumentResponse> cache;
+
+    @Autowired
+    public DocumentResponseCache(@Value("${document.cache.max-text-chars:50000000}") long maxTextChars,
+                                 @Value("${document.cache.terminal-ttl-ms:3600000}") long terminalTtlMs,
+                                 @Value("${document.cache.active-ttl-ms:2000}") long activeTtlMs,
+                                 MeterRegistry meterRegistry) {
+        this(maxTextChars, terminalTtlMs, activeTtlMs, meterRegistry, Ticker.systemTicker());
+    }
+
+    DocumentResponseCache(long maxTextChars, long terminalTtlMs, long activeTtlMs, MeterRegistry meterRegistry,
+                          Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .maximumWeight(maxTextChars)
+                .weigher((Long id, DocumentResponse response) -> weigh(response))
+                .expireAfter(new StatusExpiry(Duration.ofMillis(terminalTtlMs), Duration.ofMillis(activeTtlMs)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "documents");
+    }
+
+    /**
+     * Cached response, or the loader's result which is cached unless it is null
+     * Concurrent misses for the same id wait for one load
+     */
+    public DocumentResponse get(Long id, Function<Long, DocumentResponse> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Evict a document once its status change has committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusChangedEvent event) {
+        cache.invalidate(event.documentId());
+    }
+
+    /**
+     * Evict everything, for bulk updates that publish no events
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static int weigh(DocumentResponse response) {
+        String text = response.getExtractedText();
+        return ENTRY_OVERHEAD + (text == null ? 0 : text.length());
+    }
+
+    private static boolean isTerminal(DocumentResponse response) {
+        return DocumentStatus.COMPLETED.name().equals(response.getStatus())
+                || DocumentStatus.FAILED.name().equals(response.getStatus());
+    }
+
+    private record StatusExpiry(Duration terminalTtl, Duration activeTtl) implements Expiry<Long, DocumentResponse> {
+
+        @Override
+        public long expireAfterCreate(Long id, DocumentResponse response, long currentTime) {
+            return (isTerminal(response) ? terminalTtl : activeTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, DocumentResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, DocumentResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.samklas.document_ai_backend.service;
+
+import java.time.Duration;
+
+/**
+ * Published when a document goes back to PENDING to be tried again after a delay
+ */
+public record DocumentRetryScheduledEvent(QueuedDocument document, Duration delay) {
+}
@@ -0,0 +1,272 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import com.samklas.document_ai_backend.search.DocumentSearchIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the full-text index in step with COMPLETED documents and answers searches
+ * Documents completed on this node are queued after commit and indexed in batches on a single indexer
+ * thread, so workers never wait on the index. They become searchable within
+ * search.index.refresh-interval-ms. Every search.index.poll-interval-ms the database is asked for
+ * documents completed since the last poll, which picks up those completed on other nodes or without an
+ * event. Only that poll moves the committed position forward. On startup the index catches up on
+ * documents completed since its last commit, or is rebuilt from the database when it is missing or
+ * search.index.rebuild is set. Searches keep using the previous index until a rebuild is done.
+ */
+@Service
+@DependsOn("schemaMigrations")
+public class DocumentSearchService implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSearchService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Before any processed_at, where a full rebuild starts
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // Time between a document's processed_at and its commit, covers slow batch transactions
+    private static final Duration COMMIT_SKEW = Duration.ofMinutes(1);
+
+    private final DocumentSearchIndex index;
+    private final DocumentRepository documentRepository;
+    private final DocumentTextStore documentTextStore;
+    private final ScheduledExecutorService indexer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("search-indexer").daemon().factory());
+
+    private final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+
+    // Only touched on the indexer thread
+    private LocalDateTime indexedUpTo;
+
+    // Documents indexed since indexedUpTo and when, the next poll would find them again
+    private final Map<Long, LocalDateTime> recentlyIndexed = new HashMap<>();
+
+    @Value("${search.index.rebuild:false}")
+    private boolean rebuild;
+
+    @Value("${search.index.refresh-interval-ms:1000}")
+    private long refreshIntervalMs;
+
+    @Value("${search.index.poll-interval-ms:10000}")
+    private long pollIntervalMs;
+
+    @Value("${search.index.commit-interval-ms:60000}")
+    private long commitIntervalMs;
+
+    @Value("${search.max-results:10000}")
+    private int maxResults;
+
+    public DocumentSearchService(DocumentSearchIndex index, DocumentRepository documentRepository,
+                                 DocumentTextStore documentTextStore) {
+        this.index = index;
+        this.documentRepository = documentRepository;
+        this.documentTextStore = documentTextStore;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // Runs first on the indexer thread, the scheduled tasks below wait for it
+        indexer.execute(this::catchUp);
+        indexer.scheduleWithFixedDelay(this::indexPending, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        indexer.scheduleWithFixedDelay(this::pollCompleted, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        indexer.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a document for indexing once its result has committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusChangedEvent event) {
+        if (event.status() == DocumentStatus.COMPLETED) {
+            pending.add(event.documentId());
+        }
+    }
+
+    /**
+     * Ranked full-text search over COMPLETED documents, best match first
+     * Throws IllegalArgumentException when the page reaches past search.max-results
+     */
+    public DocumentSearchIndex.SearchResult search(String query, String documentType, LocalDateTime createdFrom,
+                                                   LocalDateTime createdTo, int offset, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        if (offset < 0 || offset + pageSize > maxResults) {
+            throw new IllegalArgumentException("Only the first " + maxResults + " results can be paged through");
+        }
+
+        try {
+            return index.search(query, documentType, createdFrom, createdTo, offset, pageSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        indexer.shutdown();
+        if (indexer.awaitTermination(30, TimeUnit.SECONDS)) {
+            // Whatever completed meanwhile, then a final commit
+            indexPending();
+            pollCompleted();
+            commit();
+        }
+    }
+
+    /**
+     * Index what the last commit is missing, everything if there is no usable index
+     */
+    void catchUp() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            LocalDateTime since = rebuild ? null : index.indexedUpTo();
+
+            if (since == null) {
+                logger.info("Rebuilding search index from the database");
+                index.deleteAll();
+            }
+            int indexed = indexAllCompleted(since, false);
+            index.commit(startedAt.minus(COMMIT_SKEW));
+            index.refresh();
+            indexedUpTo = startedAt.minus(COMMIT_SKEW);
+
+            logger.info("Search index {} with {} documents", since == null ? "rebuilt" : "caught up", indexed);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not bring the search index up to date, searches may miss documents", e);
+        }
+    }
+
+    /**
+     * Keyset pages of COMPLETED documents, all of them or those processed since the given time
+     * With remember set, documents indexed since indexedUpTo are skipped and the rest recorded
+     */
+    private int indexAllCompleted(LocalDateTime processedFrom, boolean remember) throws IOException {
+        int indexed = 0;
+        LocalDateTime afterProcessedAt = processedFrom != null ? processedFrom : EPOCH;
+        long afterId = 0;
+
+        while (true) {
+            List<CompletedDocument> chunk = documentRepository.findCompletedAfter(
+                    afterProcessedAt, afterId, Limit.of(CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                return indexed;
+            }
+            CompletedDocument last = chunk.get(chunk.size() - 1);
+            afterProcessedAt = last.processedAt();
+            afterId = last.id();
+
+            List<DocumentListResponse> documents = chunk.stream()
+                    .filter(document -> !remember || !recentlyIndexed.containsKey(document.id()))
+                    .map(CompletedDocument::listItem)
+                    .toList();
+            index(documents, remember);
+            indexed += documents.size();
+        }
+    }
+
+    /**
+     * Index queued documents and make them searchable
+     * A failed batch goes back to the queue for the next round
+     */
+    private void indexPending() {
+        List<Long> batch = new ArrayList<>(CHUNK_SIZE);
+        try {
+            Long documentId;
+            while ((documentId = pending.poll()) != null) {
+                batch.add(documentId);
+                if (batch.size() == CHUNK_SIZE) {
+                    index(documentRepository.findCompleted(batch), true);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                index(documentRepository.findCompleted(batch), true);
+                batch.clear();
+            }
+            index.refresh();
+        } catch (IOException | RuntimeException e) {
+            pending.addAll(batch);
+            logger.warn("Could not update the search index, retrying {} documents: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Index documents the database has as completed since the last poll
+     * Events only cover this node, this is what makes indexedUpTo true for all of them
+     */
+    void pollCompleted() {
+        if (indexedUpTo == null) {
+            // The startup catch-up failed, nothing is known about the index
+            catchUp();
+            return;
+        }
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            int indexed = indexAllCompleted(indexedUpTo, true);
+            if (indexed > 0) {
+                index.refresh();
+                logger.debug("Indexed {} documents completed without an event on this node", indexed);
+            }
+
+            // Documents not yet committed when this poll started were processed after this
+            LocalDateTime polledUpTo = startedAt.minus(COMMIT_SKEW);
+            recentlyIndexed.values().removeIf(indexedAt -> indexedAt.isBefore(polledUpTo));
+            indexedUpTo = polledUpTo;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not poll for completed documents, retrying: {}", e.getMessage());
+        }
+    }
+
+    private void commit() {
+        // Nothing to record before the startup catch-up has finished
+        if (indexedUpTo == null) {
+            return;
+        }
+        try {
+            index.commit(indexedUpTo);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not commit the search index: {}", e.getMessage());
+        }
+    }
+
+    private void index(List<DocumentListResponse> documents, boolean remember) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        Map<Long, String> texts = documentTextStore.loadAll(documents.stream().map(DocumentListResponse::getId).toList());
+        LocalDateTime indexedAt = LocalDateTime.now();
+        for (DocumentListResponse document : documents) {
+            index.index(document.getId(), document.getFilename(), document.getDocumentType(),
+                    document.getCreatedAt(), texts.get(document.getId()));
+            if (remember) {
+                recentlyIndexed.put(document.getId(), indexedAt);
+            }
+        }
+    }
+}
@@ -1,82 +1,102 @@
 package com.samklas.document_ai_backend.service;
 
 import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.dto.DocumentPage;
 import com.samklas.document_ai_backend.dto.DocumentResponse;
 import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
 import com.samklas.document_ai_backend.integration.MLServiceClient;
 import com.samklas.document_ai_backend.repository.DocumentRepository;
+import com.samklas.document_ai_backend.storage.DocumentStore;
+import com.samklas.document_ai_backend.storage.StoredObject;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class DocumentService {
 
     private static final Logger logger = LoggerFactory.getLogger(DocumentService.class);
 
-    private final DocumentRepository documentRepository;
-    private final MLServiceClient mlServiceClient;
-
-
-    @Value("${document.storage.path:./uploads}")
-    private String uploadPath;
+    private static final int MAX_PAGE_SIZE = 200;
 
-    public DocumentService(DocumentRepository documentRepository, MLServiceClient mlServiceClient) {
+    private final DocumentRepository documentRepository;
+    private final ProcessingDispatcher processingDispatcher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OcrResultCache ocrResultCache;
+    private final DocumentTextStore documentTextStore;
+    private final DocumentStore documentStore;
+    private final DocumentResponseCache documentResponseCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer uploadWriteTimer;
+    private final DistributionSummary uploadSize;
+
+    @Value("${processing.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    // Same budget DocumentProcessor gives transient errors, an expired lease counts as one attempt
+    @Value("${ml.resilience.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    public DocumentService(DocumentRepository documentRepository, ProcessingDispatcher processingDispatcher,
+                           ApplicationEventPublisher eventPublisher, OcrResultCache ocrResultCache,
+                           DocumentTextStore documentTextStore, DocumentStore documentStore,
+                           DocumentResponseCache documentResponseCache, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
         this.documentRepository = documentRepository;
-        this.mlServiceClient = mlServiceClient;
-
+        this.processingDispatcher = processingDispatcher;
+        this.eventPublisher = eventPublisher;
+        this.ocrResultCache = ocrResultCache;
+        this.documentTextStore = documentTextStore;
+        this.documentStore = documentStore;
+        this.documentResponseCache = documentResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.uploadWriteTimer = Timer.builder("documents.upload.write")
+                .description("Streaming an uploaded file into the document store")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(meterRegistry);
+        this.uploadSize = DistributionSummary.builder("documents.upload.size")
+                .description("Size of stored uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
     /**
-     * Process uploaded document - saves file and initiates async OCR processing
+     * Process uploaded document - saves file and dispatches OCR processing once committed
+     * The file is stored before the transaction starts, no connection is held while it is copied and hashed
      */
-    @Transactional
-    public DocumentResponse processDocument(MultipartFile file) {
-        try {
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String storedFilename = UUID.randomUUID().toString() + "_" + originalFilename;
-
-            // Save file to disk
-            Path uploadDir = Paths.get(uploadPath);
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
-            }
-
-            Path filePath = uploadDir.resolve(storedFilename);
-            Files.write(filePath, file.getBytes());
-
-            // Create document entity
-            Document document = new Document();
-            document.setFilename(originalFilename);
-            document.setFilepath(filePath.toString());
-            document.setContentType(file.getContentType());
-            document.setFileSize(file.getSize());
-            document.setStatus("PENDING");
-            document.setCreatedAt(LocalDateTime.now());
-
-            // Save to database
-            document = documentRepository.save(document);
-
-            logger.info("Document saved with ID: {}, initiating async processing", document.getId());
-
-            // Return response immediately
-            return mapToDocumentResponse(document);
+    public DocumentResponse processDocument(MultipartFile file, DocumentPriority priority, String submitter) {
+        try (InputStream in = file.getInputStream()) {
+            StoredUpload upload = storeFile(in, file.getOriginalFilename(), file.getContentType());
+            // Called on this, not through the proxy, so the transaction is started here
+            return transactionTemplate.execute(tx -> saveUploads(List.of(upload), priority, submitter).get(0));
 
         } catch (IOException e) {
             logger.error("Error saving document file", e);
@@ -85,127 +105,215 @@ public class DocumentService {
     }
 
     /**
-     * Scheduled task to process pending documents
-     * Runs every 30 seconds
+     * Stream one file to storage, hashing it on the way
+     * Writes no database rows and leaves the input stream open
      */
-    @Scheduled(fixedDelay = 30000)
-    @Transactional
-    public void processPendingDocuments() {
-        List<Document> pendingDocs = documentRepository.findByStatus("PENDING");
-
-        if (!pendingDocs.isEmpty()) {
-            logger.info("Found {} pending documents to process", pendingDocs.size());
-        }
-
-        for (Document doc : pendingDocs) {
-            processDocumentAsync(doc.getId());
-        }
+    public StoredUpload storeFile(InputStream in, String originalFilename, String contentType) throws IOException {
+        // Content addressed, identical content is kept once
+        long start = System.nanoTime();
+        StoredObject stored = documentStore.put(in);
+        uploadWriteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        uploadSize.record(stored.size());
+
+        return new StoredUpload(originalFilename, contentType, stored.key(), stored.size(), stored.contentHash());
     }
 
     /**
-     * Async processing of a single document
+     * Create documents for stored files in one transaction
+     * Inserts are JDBC batched, PENDING documents are dispatched for OCR once committed
      */
-    @Async
     @Transactional
-    public void processDocumentAsync(Long documentId) {
-        Optional<Document> optionalDoc = documentRepository.findById(documentId);
+    public List<DocumentResponse> saveUploads(List<StoredUpload> uploads, DocumentPriority priority, String submitter) {
+        List<Document> documents = new ArrayList<>(uploads.size());
+        List<String> reusedTexts = new ArrayList<>(uploads.size());
 
-        if (optionalDoc.isEmpty()) {
-            logger.warn("Document with ID {} not found", documentId);
-            return;
+        for (StoredUpload upload : uploads) {
+            // Create document entity
+            Document document = new Document();
+            document.setFilename(upload.filename());
+            document.setFilepath(upload.filepath());
+            document.setContentType(upload.contentType());
+            document.setFileSize(upload.size());
+            document.setContentHash(upload.contentHash());
+            document.setCreatedAt(LocalDateTime.now());
+            document.setStatus(DocumentStatus.PENDING);
+            document.setPriority(priority);
+            document.setSubmitter(submitter);
+
+            // Identical content was already processed, no need to call the ML service again
+            Optional<MLServiceClient.MLResponse> previousResult = ocrResultCache.find(upload.contentHash());
+            previousResult.ifPresent(result -> {
+                document.setDocumentType(result.getDocumentType());
+                document.setConfidenceScore(result.getConfidence());
+                document.setStatus(DocumentStatus.COMPLETED);
+                document.setProcessedAt(LocalDateTime.now());
+            });
+
+            documents.add(document);
+            reusedTexts.add(previousResult.map(MLServiceClient.MLResponse::getExtractedText).orElse(null));
         }
 
-        Document document = optionalDoc.get();
-
-        // Prevent double processing
-        if (!"PENDING".equals(document.getStatus())) {
-            return;
-        }
+        // Save to database
+        documentRepository.saveAll(documents);
 
-        try {
-            // Update status to PROCESSING
-            document.setStatus("PROCESSING");
-            documentRepository.save(document);
+        List<DocumentResponse> responses = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
 
-            logger.info("Processing document ID: {}", documentId);
+            if (document.getStatus() == DocumentStatus.COMPLETED) {
+                documentTextStore.save(document.getId(), reusedTexts.get(i));
+                logger.debug("Document saved with ID: {}, reused OCR result of identical content", document.getId());
 
-            // Call ML service for OCR and classification
-            Path filePath = Paths.get(document.getFilepath());
-            byte[] fileContent = Files.readAllBytes(filePath);
+                // Never goes through the processor, listeners still need to hear it is done
+                eventPublisher.publishEvent(new DocumentStatusChangedEvent(
+                        document.getId(), DocumentStatus.COMPLETED, document.getDocumentType()));
+            } else {
+                logger.debug("Document saved with ID: {}, initiating async processing", document.getId());
 
+                // Picked up by the dispatcher after commit
+                eventPublisher.publishEvent(new DocumentUploadedEvent(new QueuedDocument(
+                        document.getId(), priority, submitter, document.getCreatedAt())));
+            }
 
-            MLServiceClient.MLResponse mlResponse = mlServiceClient.processDocument(
-                    fileContent,
-                    document.getContentType()
-            );
+            responses.add(mapToDocumentResponse(document, reusedTexts.get(i)));
+        }
+        return responses;
+    }
 
+    /**
+     * Recovery sweep for pending documents
+     * Uploads are dispatched on commit, this only catches documents missed after a restart or a full queue.
+     * Each priority class is swept on its own, interactive first, so a bulk backlog never hides an upload.
+     */
+    @Scheduled(fixedDelayString = "${processing.sweep-interval-ms:60000}")
+    public void processPendingDocuments() {
+        LocalDateTime now = LocalDateTime.now();
+        for (DocumentPriority priority : List.of(DocumentPriority.INTERACTIVE, DocumentPriority.BULK)) {
+            List<QueuedDocument> pending = documentRepository.findDue(priority, now, Limit.of(sweepBatchSize));
 
+            if (!pending.isEmpty()) {
+                logger.info("Found {} pending {} documents to process", pending.size(), priority);
+            }
 
-            // Update document with results
+            // Documents refused by a full queue wait for the next sweep
+            int leftOver = 0;
+            for (QueuedDocument document : pending) {
+                if (!processingDispatcher.dispatch(document)) {
+                    leftOver++;
+                }
+            }
 
-            document.setExtractedText(mlResponse.getExtractedText());
-            document.setDocumentType(mlResponse.getDocumentType());
-            document.setConfidenceScore(mlResponse.getConfidence());
+            if (leftOver > 0) {
+                logger.info("Processing queue full, {} pending {} documents left for the next sweep", leftOver, priority);
+            }
+        }
+    }
 
+    /**
+     * Reaper for documents stuck in PROCESSING
+     * Returns documents whose lease expired, e.g. after a node crash, to PENDING.
+     * Each expiry counts as an attempt, documents out of attempts are marked FAILED instead.
+     */
+    @Scheduled(fixedDelayString = "${processing.lease-reaper-interval-ms:60000}")
+    @Transactional
+    public void releaseExpiredLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        int failed = documentRepository.failExpiredLeases(now, maxAttempts,
+                "Processing lease expired on all " + maxAttempts + " attempts");
+        int released = documentRepository.releaseExpiredLeases(now, maxAttempts);
+
+        if (failed > 0) {
+            logger.error("Failed {} documents whose processing lease expired on every attempt", failed);
+        }
+        if (released > 0) {
+            logger.warn("Released {} documents with expired processing leases", released);
+        }
+        if (failed > 0 || released > 0) {
+            // Bulk update, no status events for the cache
+            documentResponseCache.invalidateAll();
+        }
+    }
 
-            document.setStatus("COMPLETED");
-            document.setProcessedAt(LocalDateTime.now());
+    /**
+     * Get document by ID
+     * Read through DocumentResponseCache, a hit touches no database connection.
+     * Extracted text is only looked up once the document is COMPLETED
+     */
+    public Optional<DocumentResponse> getDocumentById(Long id) {
+        return Optional.ofNullable(documentResponseCache.get(id, this::loadDocument));
+    }
 
-            documentRepository.save(document);
+    private DocumentResponse loadDocument(Long id) {
+        // Text is written in the same transaction as COMPLETED, no need to read both in one
+        return documentRepository.findById(id)
+                .map(document -> mapToDocumentResponse(document, document.getStatus() == DocumentStatus.COMPLETED
+                        ? documentTextStore.load(id).orElse(null)
+                        : null))
+                .orElse(null);
+    }
 
-            /*
-            logger.info("Document ID: {} processed successfully as type: {}",
-                    documentId, mlResponse.getDocumentType());
+    /**
+     * List documents newest first, one page at a time
+     * The cursor is the opaque token returned with the previous page
+     */
+    @Transactional(readOnly = true)
+    public DocumentPage listDocuments(DocumentStatus status, String documentType, LocalDateTime createdFrom,
+                                      LocalDateTime createdTo, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
 
-             */
+        // One extra row tells whether another page follows
+        PageCursor after = decodeCursor(cursor);
+        List<DocumentListResponse> rows = documentRepository.findPage(status, documentType, createdFrom, createdTo,
+                after != null ? after.createdAt() : null, after != null ? after.id() : null, pageSize + 1);
 
-        } catch (Exception e) {
-            logger.error("Error processing document ID: {}", documentId, e);
-            document.setStatus("FAILED");
-            document.setErrorMessage(e.getMessage());
-            documentRepository.save(document);
+        if (rows.size() <= pageSize) {
+            return new DocumentPage(rows, null);
         }
+
+        List<DocumentListResponse> items = rows.subList(0, pageSize);
+        DocumentListResponse last = items.get(pageSize - 1);
+        return new DocumentPage(items, encodeCursor(new PageCursor(last.getCreatedAt(), last.getId())));
     }
 
     /**
-     * Get document by ID
+     * Position in the list, the createdAt and id of the last row of a page
      */
-    @Transactional(readOnly = true)
-    public Optional<DocumentResponse> getDocumentById(Long id) {
-        return documentRepository.findById(id)
-                .map(this::mapToDocumentResponse);
+    private record PageCursor(LocalDateTime createdAt, Long id) {
+    }
+
+    private static String encodeCursor(PageCursor cursor) {
+        String value = cursor.createdAt() + "," + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
-     * Get all documents
+     * Throws IllegalArgumentException for a malformed cursor
      */
-    @Transactional(readOnly = true)
-    public List<DocumentListResponse> getAllDocuments() {
-        return documentRepository.findAll().stream()
-                .map(this::mapToDocumentListResponse)
-                .collect(Collectors.toList());
+    private static PageCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            return new PageCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
     }
 
     // Mapper methods
-    private DocumentResponse mapToDocumentResponse(Document document) {
+    private DocumentResponse mapToDocumentResponse(Document document, String extractedText) {
         return new DocumentResponse(
                 document.getId(),
                 document.getFilename(),
-                document.getStatus(),
+                document.getStatus().name(),
                 document.getDocumentType(),
-                document.getExtractedText(),
+                extractedText,
                 document.getCreatedAt(),
                 document.getProcessedAt()
         );
     }
-
-    private DocumentListResponse mapToDocumentListResponse(Document document) {
-        return new DocumentListResponse(
-                document.getId(),
-                document.getFilename(),
-                document.getStatus(),
-                document.getDocumentType(),
-                document.getCreatedAt()
-        );
-    }
 }
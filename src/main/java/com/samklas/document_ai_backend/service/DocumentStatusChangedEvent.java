@@ -0,0 +1,9 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+
+/**
+ * Published when a document moves to PROCESSING, COMPLETED or FAILED
+ */
+public record DocumentStatusChangedEvent(Long documentId, DocumentStatus status, String documentType) {
+}
@@ -0,0 +1,213 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentStatusUpdate;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes document status changes to Server-Sent Events subscribers
+ * An idle subscriber holds no thread, only its emitter. Sends run on virtual threads so a slow
+ * client never blocks the worker that committed the change. A subscription completes once all
+ * of its documents are COMPLETED or FAILED.
+ */
+@Component
+public class DocumentStatusNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStatusNotifier.class);
+
+    // Queued in place of a status update to keep idle connections open and detect gone clients
+    private static final DocumentStatusUpdate HEARTBEAT = new DocumentStatusUpdate();
+
+    private final DocumentRepository documentRepository;
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ConcurrentHashMap<Long, Set<Subscription>> subscriptionsByDocument = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    @Value("${notifications.sse-timeout-ms:1800000}")
+    private long timeoutMs;
+
+    public DocumentStatusNotifier(DocumentRepository documentRepository) {
+        this.documentRepository = documentRepository;
+    }
+
+    /**
+     * Subscribe to status changes of the given documents
+     * The current status of each existing document is sent first
+     */
+    public SseEmitter subscribe(Collection<Long> documentIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscription subscription = new Subscription(emitter, new LinkedHashSet<>(documentIds));
+
+        emitter.onCompletion(() -> unregister(subscription));
+        // Completed here, otherwise Spring dispatches a timeout error onto the committed event stream
+        emitter.onTimeout(() -> {
+            unregister(subscription);
+            emitter.complete();
+        });
+        emitter.onError(e -> unregister(subscription));
+
+        // Registered before reading, so no change committed in between is missed
+        subscriptions.add(subscription);
+        for (Long documentId : subscription.remaining) {
+            subscriptionsByDocument.computeIfAbsent(documentId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+
+        Set<Long> unknown = new LinkedHashSet<>(subscription.documentIds);
+        for (DocumentStatusUpdate update : documentRepository.findStatuses(subscription.documentIds)) {
+            unknown.remove(update.getId());
+            enqueue(subscription, update);
+        }
+
+        // Nothing will ever be published for ids that do not exist
+        if (!unknown.isEmpty()) {
+            subscription.remaining.removeAll(unknown);
+            if (subscription.remaining.isEmpty()) {
+                emitter.complete();
+                unregister(subscription);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Forward a status change once its transaction has committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusChangedEvent event) {
+        Set<Subscription> subscribers = subscriptionsByDocument.get(event.documentId());
+        if (subscribers == null) {
+            return;
+        }
+
+        DocumentStatusUpdate update = new DocumentStatusUpdate(event.documentId(), event.status(), event.documentType());
+        for (Subscription subscription : subscribers) {
+            enqueue(subscription, update);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.heartbeat-interval-ms:30000}")
+    public void sendHeartbeats() {
+        for (Subscription subscription : subscriptions) {
+            enqueue(subscription, HEARTBEAT);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
+        sender.shutdown();
+    }
+
+    /**
+     * Updates of one subscription are sent by a single drain task at a time, in order
+     */
+    private void enqueue(Subscription subscription, DocumentStatusUpdate update) {
+        subscription.pending.add(update);
+        if (subscription.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        do {
+            DocumentStatusUpdate update;
+            while ((update = subscription.pending.poll()) != null) {
+                if (!send(subscription, update)) {
+                    subscription.pending.clear();
+                    return;
+                }
+            }
+            subscription.draining.set(false);
+        } while (!subscription.pending.isEmpty() && subscription.draining.compareAndSet(false, true));
+    }
+
+    private boolean send(Subscription subscription, DocumentStatusUpdate update) {
+        try {
+            if (update == HEARTBEAT) {
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+                return true;
+            }
+
+            // Anything after a terminal status is a stale duplicate
+            if (!subscription.remaining.contains(update.getId())) {
+                return true;
+            }
+
+            subscription.emitter.send(SseEmitter.event()
+                    .name("status")
+                    .id(update.getId() + ":" + update.getStatus())
+                    .data(update));
+
+            if (isTerminal(update.getStatus())) {
+                subscription.remaining.remove(update.getId());
+                if (subscription.remaining.isEmpty()) {
+                    subscription.emitter.complete();
+                    unregister(subscription);
+                }
+            }
+            return true;
+
+        } catch (IOException | IllegalStateException e) {
+            // Client went away, the container reports it through onError as well
+            logger.debug("Dropping status subscriber: {}", e.getMessage());
+            unregister(subscription);
+            return false;
+        }
+    }
+
+    private void unregister(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        for (Long documentId : subscription.documentIds) {
+            subscriptionsByDocument.computeIfPresent(documentId, (id, subscribers) -> {
+                subscribers.remove(subscription);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    private static boolean isTerminal(String status) {
+        return DocumentStatus.COMPLETED.name().equals(status) || DocumentStatus.FAILED.name().equals(status);
+    }
+
+    private static class Subscription {
+        private final SseEmitter emitter;
+        private final Set<Long> documentIds;
+        private final Set<Long> remaining;
+        private final Queue<DocumentStatusUpdate> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscription(SseEmitter emitter, Set<Long> documentIds) {
+            this.emitter = emitter;
+            this.documentIds = documentIds;
+            this.remaining = ConcurrentHashMap.newKeySet();
+            this.remaining.addAll(documentIds);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentText;
+import com.samklas.document_ai_backend.repository.DocumentTextRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes extracted text in the document_texts table
+ * Text above the size threshold is Deflate compressed when that makes it smaller
+ */
+@Service
+public class DocumentTextStore {
+
+    private final DocumentTextRepository documentTextRepository;
+
+    @Value("${document.text.compression-threshold-bytes:512}")
+    private int compressionThresholdBytes;
+
+    public DocumentTextStore(DocumentTextRepository documentTextRepository) {
+        this.documentTextRepository = documentTextRepository;
+    }
+
+    /**
+     * Store the extracted text of a document, joins the caller's transaction
+     */
+    public void save(Long documentId, String text) {
+        if (text == null) {
+            return;
+        }
+
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        DocumentText documentText = new DocumentText(documentId, DocumentText.Encoding.PLAIN, plain);
+
+        if (plain.length >= compressionThresholdBytes) {
+            byte[] deflated = deflate(plain);
+            if (deflated.length < plain.length) {
+                documentText.setEncoding(DocumentText.Encoding.DEFLATE);
+                documentText.setContent(deflated);
+            }
+        }
+
+        documentTextRepository.save(documentText);
+    }
+
+    public Optional<String> load(Long documentId) {
+        return documentTextRepository.findById(documentId)
+                .map(DocumentTextStore::decode);
+    }
+
+    /**
+     * Extracted text of several documents, documents without text are left out
+     */
+    public Map<Long, String> loadAll(Collection<Long> documentIds) {
+        Map<Long, String> texts = new HashMap<>();
+        for (DocumentText documentText : documentTextRepository.findAllById(documentIds)) {
+            texts.put(documentText.getDocumentId(), decode(documentText));
+        }
+        return texts;
+    }
+
+    private static String decode(DocumentText documentText) {
+        byte[] plain = documentText.getEncoding() == DocumentText.Encoding.DEFLATE
+                ? inflate(documentText.getContent())
+                : documentText.getContent();
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] plain) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] deflated) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(deflated.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.samklas.document_ai_backend.service;
+
+/**
+ * Published when a new document has been stored and is waiting for processing
+ */
+public record DocumentUploadedEvent(QueuedDocument document) {
+}
@@ -0,0 +1,180 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Queue of documents waiting for a worker, shared fairly between priority classes and submitters
+ * Classes get turns in proportion to their weight (stride scheduling), so bulk work still runs
+ * whenever interactive work leaves room. Within a class submitters take turns one document at a time,
+ * a large import cannot starve a single upload of the same class. A document that has waited
+ * longer than maxWait is taken first regardless, so nothing ages out. Capacity is per class.
+ */
+public class FairShareScheduler {
+
+    private final Map<DocumentPriority, ClassQueue> classes = new EnumMap<>(DocumentPriority.class);
+    private final int capacityPerClass;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+
+    // All queued documents in arrival order, the first one is the oldest
+    private final LinkedHashMap<Long, Entry> arrivals = new LinkedHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private double virtualTime;
+
+    public FairShareScheduler(Map<DocumentPriority, Integer> weights, int capacityPerClass, Duration maxWait) {
+        this(weights, capacityPerClass, maxWait, System::nanoTime);
+    }
+
+    FairShareScheduler(Map<DocumentPriority, Integer> weights, int capacityPerClass, Duration maxWait,
+                       LongSupplier nanoClock) {
+        for (DocumentPriority priority : DocumentPriority.values()) {
+            classes.put(priority, new ClassQueue(Math.max(weights.getOrDefault(priority, 1), 1)));
+        }
+        this.capacityPerClass = capacityPerClass;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns false when the document's class is full
+     */
+    public boolean offer(QueuedDocument document) {
+        lock.lock();
+        try {
+            ClassQueue queue = classes.get(document.priority());
+            if (queue.size >= capacityPerClass) {
+                return false;
+            }
+
+            // A class coming back from idle starts level with the others instead of claiming missed turns
+            if (queue.size == 0) {
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+
+            Entry entry = new Entry(document, nanoClock.getAsLong());
+            ArrayDeque<Entry> submitterQueue = queue.bySubmitter.get(document.submitter());
+            if (submitterQueue == null) {
+                submitterQueue = new ArrayDeque<>();
+                queue.bySubmitter.put(document.submitter(), submitterQueue);
+                queue.rotation.addLast(document.submitter());
+            }
+            submitterQueue.addLast(entry);
+            queue.size++;
+            arrivals.put(document.id(), entry);
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait up to the timeout for the next document, null if none arrived
+     */
+    public QueuedDocument poll(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (arrivals.isEmpty()) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return arrivals.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(DocumentPriority priority) {
+        lock.lock();
+        try {
+            return classes.get(priority).size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QueuedDocument take() {
+        Entry oldest = arrivals.values().iterator().next();
+        if (nanoClock.getAsLong() - oldest.enqueuedAt() >= maxWaitNanos) {
+            // Documents of one submitter are queued in arrival order, the oldest overall heads its queue
+            return remove(classes.get(oldest.document().priority()), oldest.document().submitter());
+        }
+
+        ClassQueue next = null;
+        for (ClassQueue queue : classes.values()) {
+            if (queue.size > 0 && (next == null || queue.pass < next.pass)) {
+                next = queue;
+            }
+        }
+
+        next.pass += 1.0 / next.weight;
+        virtualTime = next.pass;
+
+        // Round robin, the submitter goes to the back of the line
+        String submitter = next.rotation.pollFirst();
+        next.rotation.addLast(submitter);
+        return remove(next, submitter);
+    }
+
+    private QueuedDocument remove(ClassQueue queue, String submitter) {
+        ArrayDeque<Entry> submitterQueue = queue.bySubmitter.get(submitter);
+        Entry entry = submitterQueue.pollFirst();
+
+        if (submitterQueue.isEmpty()) {
+            queue.bySubmitter.remove(submitter);
+            for (Iterator<String> it = queue.rotation.descendingIterator(); it.hasNext(); ) {
+                if (it.next().equals(submitter)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+
+        queue.size--;
+        arrivals.remove(entry.document().id());
+        return entry.document();
+    }
+
+    private record Entry(QueuedDocument document, long enqueuedAt) {
+    }
+
+    private static class ClassQueue {
+        private final int weight;
+        private final Map<String, ArrayDeque<Entry>> bySubmitter = new HashMap<>();
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private int size;
+        private double pass;
+
+        ClassQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.storage.DocumentStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shrinks scanned images before they are sent for OCR
+ * PNG and JPEG uploads are downscaled so their long edge is at most that of an A4 page at
+ * processing.preprocess.target-dpi, converted to grayscale and re-encoded in their own format without
+ * metadata. The EXIF orientation is applied to the pixels, as it is dropped with the rest. The result is
+ * kept next to the original in the DocumentStore, so retries skip the work. Decoding and encoding run on
+ * processing.preprocess.threads, which caps the CPU taken from request handling. Other content types, and
+ * images that would not get smaller, are sent as uploaded.
+ */
+@Component
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    // Long edge of an A4 page, scans of other page sizes are treated the same
+    private static final double PAGE_LONG_EDGE_INCHES = 11.69;
+
+    private final DocumentStore documentStore;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int targetDpi;
+    private final int maxLongEdge;
+    private final float jpegQuality;
+    private final long maxPixels;
+    private final ExecutorService pool;
+    private final DistributionSummary savedBytes;
+
+    public ImagePreprocessor(DocumentStore documentStore,
+                             @Value("${processing.preprocess.enabled:false}") boolean enabled,
+                             @Value("${processing.preprocess.target-dpi:200}") int targetDpi,
+                             @Value("${processing.preprocess.jpeg-quality:0.85}") float jpegQuality,
+                             @Value("${processing.preprocess.threads:0}") int threads,
+                             @Value("${processing.preprocess.max-pixels:100000000}") long maxPixels,
+                             MeterRegistry meterRegistry) {
+        this.documentStore = documentStore;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.targetDpi = targetDpi;
+        this.maxLongEdge = (int) Math.ceil(PAGE_LONG_EDGE_INCHES * targetDpi);
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+
+        // Half the cores by default, the rest stay free for uploads and reads
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.pool = Executors.newFixedThreadPool(poolSize,
+                Thread.ofPlatform().name("image-preprocess-", 0).daemon().factory());
+
+        this.savedBytes = DistributionSummary.builder("documents.preprocess.saved")
+                .description("Bytes not sent to the ML service thanks to preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * What to send to the ML service for a stored document, the preprocessed image when there is one
+     * Any error falls back to the original, preprocessing never fails a document
+     */
+    public Resource prepare(String key, String contentType) {
+        Resource original = documentStore.load(key);
+        String format = formatOf(contentType);
+        if (!enabled || format == null) {
+            return original;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failed";
+        try {
+            String variant = variantName(format);
+            Optional<Resource> cached = documentStore.findVariant(key, variant);
+            if (cached.isPresent()) {
+                outcome = "cached";
+                return cached.get();
+            }
+
+            byte[] shrunk = pool.submit(() -> preprocess(original, contentType)).get();
+            if (shrunk == null) {
+                outcome = "unchanged";
+                return original;
+            }
+            savedBytes.record(original.contentLength() - shrunk.length);
+            outcome = "shrunk";
+            return documentStore.putVariant(key, variant, new ByteArrayInputStream(shrunk));
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return original;
+        } catch (ExecutionException e) {
+            logger.warn("Could not preprocess {}, sending the original: {}", key, e.getCause().toString());
+            return original;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not use the preprocessed {}, sending the original: {}", key, e.toString());
+            return original;
+        } finally {
+            sample.stop(Timer.builder("documents.preprocess")
+                    .description("Preprocessing of an image before OCR, including the wait for a thread")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Downscaled grayscale image in the format of the source
+     * Null when the content type is not handled or the result would not be smaller than the source
+     */
+    public byte[] preprocess(Resource source, String contentType) throws IOException {
+        String format = formatOf(contentType);
+        if (format == null) {
+            return null;
+        }
+
+        int orientation = 1;
+        if (format.equals("jpeg")) {
+            try (InputStream in = source.getInputStream()) {
+                orientation = readExifOrientation(in);
+            }
+        }
+
+        BufferedImage image = decode(source);
+        double scale = Math.min(1.0, (double) maxLongEdge / Math.max(image.getWidth(), image.getHeight()));
+
+        // A single bilinear step below half size skips source pixels and loses thin strokes
+        while (scale < 0.5) {
+            image = drawGray(image, 0.5, 1);
+            scale *= 2;
+        }
+        byte[] encoded = encode(drawGray(image, scale, orientation), format);
+
+        return encoded.length < source.contentLength() ? encoded : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private BufferedImage decode(Resource source) throws IOException {
+        try (ImageInputStream in = source.isFile()
+                ? ImageIO.createImageInputStream(source.getFile())
+                : new MemoryCacheImageInputStream(source.getInputStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Not a readable image");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image of " + width + "x" + height + " exceeds processing.preprocess.max-pixels");
+                }
+
+                // Skipping pixels while decoding is far cheaper than scaling afterwards, at most a
+                // factor of 2 is left to the smooth scaling
+                int subsampling = Math.max(1, Math.max(width, height) / (2 * maxLongEdge));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scaled, oriented copy in 8 bit gray, transparent areas become white
+     */
+    private static BufferedImage drawGray(BufferedImage source, double scale, int orientation) {
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        boolean transposed = orientation >= 5;
+
+        BufferedImage target = new BufferedImage(transposed ? height : width, transposed ? width : height,
+                BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, target.getWidth(), target.getHeight());
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.transform(orientationTransform(orientation, width, height));
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Maps an image of the given size as stored to how EXIF orientation 1 to 8 says it is viewed
+     */
+    private static AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> new AffineTransform();
+        };
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param instanceof JPEGImageWriteParam jpeg) {
+                jpeg.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                jpeg.setCompressionQuality(jpegQuality);
+                jpeg.setOptimizeHuffmanTables(true);
+            }
+            // No metadata is passed on, EXIF, ICC profiles and text chunks of the upload are dropped
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Settings are part of the name, changing them preprocesses documents again
+     */
+    private String variantName(String format) {
+        String name = "ocr-" + targetDpi + "dpi-gray";
+        return format.equals("jpeg") ? name + "-q" + Math.round(jpegQuality * 100) : name;
+    }
+
+    private static String formatOf(String contentType) {
+        if ("image/jpeg".equals(contentType)) {
+            return "jpeg";
+        }
+        if ("image/png".equals(contentType)) {
+            return "png";
+        }
+        return null;
+    }
+
+    /**
+     * Orientation tag of a JPEG's EXIF segment, 1 (as stored) when there is none
+     */
+    static int readExifOrientation(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readUnsignedShort() != 0xFFD8) {
+            return 1;
+        }
+
+        // Segments up to the start of scan, EXIF is an APP1 segment but so is XMP
+        while (true) {
+            int marker = data.readUnsignedShort();
+            if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                return 1;
+            }
+            int length = data.readUnsignedShort() - 2;
+            if (length < 0) {
+                return 1;
+            }
+            if (marker != 0xFFE1) {
+                data.skipNBytes(length);
+                continue;
+            }
+            int orientation = exifOrientation(data.readNBytes(length));
+            if (orientation > 0) {
+                return orientation;
+            }
+        }
+    }
+
+    /**
+     * Orientation from the first IFD of an APP1 segment, 0 if it is not EXIF
+     */
+    private static int exifOrientation(byte[] segment) {
+        if (segment.length < 14 || !new String(segment, 0, 6, StandardCharsets.ISO_8859_1).equals("Exif\0\0")) {
+            return 0;
+        }
+        try {
+            ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == 0x0112) {
+                    int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+            return 1;
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF, the image itself may still be fine
+            return 1;
+        }
+    }
+}
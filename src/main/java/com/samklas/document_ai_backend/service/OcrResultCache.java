@@ -0,0 +1,70 @@
+package com.samklas.document_ai_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.integration.MLServiceClient;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * OCR results keyed by content hash
+ * Bounded in memory by total extracted text size, backed by completed documents in the database
+ */
+@Component
+public class OcrResultCache {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentTextStore documentTextStore;
+    private final Cache<String, MLServiceClient.MLResponse> cache;
+
+    public OcrResultCache(DocumentRepository documentRepository, DocumentTextStore documentTextStore,
+                          @Value("${ocr.cache.max-text-chars:20000000}") long maxTextChars) {
+        this.documentRepository = documentRepository;
+        this.documentTextStore = documentTextStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxTextChars)
+                .weigher((String hash, MLServiceClient.MLResponse response) -> weigh(response))
+                .build();
+    }
+
+    /**
+     * Find an earlier OCR result for identical content
+     * Falls back to the database for evicted entries and results produced on other nodes
+     */
+    public Optional<MLServiceClient.MLResponse> find(String contentHash) {
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+
+        MLServiceClient.MLResponse cached = cache.getIfPresent(contentHash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<MLServiceClient.MLResponse> stored = documentRepository
+                .findFirstByContentHashAndStatus(contentHash, DocumentStatus.COMPLETED)
+                .map(document -> new MLServiceClient.MLResponse(
+                        documentTextStore.load(document.getId()).orElse(null),
+                        document.getDocumentType(),
+                        document.getConfidenceScore()
+                ));
+
+        stored.ifPresent(response -> cache.put(contentHash, response));
+        return stored;
+    }
+
+    public void put(String contentHash, MLServiceClient.MLResponse response) {
+        if (contentHash != null) {
+            cache.put(contentHash, response);
+        }
+    }
+
+    private static int weigh(MLServiceClient.MLResponse response) {
+        String text = response.getExtractedText();
+        return 1 + (text == null ? 0 : text.length());
+    }
+}
@@ -0,0 +1,46 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Number of PENDING documents across all nodes
+ * Counted periodically instead of per upload, admission checks read the last count
+ */
+@Component
+public class PendingBacklog {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingBacklog.class);
+
+    private final DocumentRepository documentRepository;
+
+    private volatile long pending;
+
+    public PendingBacklog(DocumentRepository documentRepository, MeterRegistry meterRegistry) {
+        this.documentRepository = documentRepository;
+
+        Gauge.builder("documents.pending", this, PendingBacklog::pending)
+                .description("PENDING documents across all nodes, as of the last count")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${upload.admission.backlog-refresh-ms:5000}")
+    public void refresh() {
+        try {
+            pending = documentRepository.countByStatus(DocumentStatus.PENDING);
+        } catch (RuntimeException e) {
+            // Keep the last count, the next refresh tries again
+            logger.warn("Could not count pending documents: {}", e.getMessage());
+        }
+    }
+
+    public long pending() {
+        return pending;
+    }
+}
@@ -0,0 +1,250 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.integration.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of documents waiting for a worker, ordered by FairShareScheduler
+ * Each worker takes up to processing.batch.max-size documents, waiting at most
+ * processing.batch.linger-ms for a batch to fill. A batch size of 1 sends documents one by one.
+ * Only as many workers as the ML concurrency limit currently allows take batches at a time, so the
+ * number of workers calling the ML service follows the limit as it adapts.
+ */
+@Component
+public class ProcessingDispatcher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingDispatcher.class);
+
+    private final TaskExecutor executor;
+    private final DocumentProcessor documentProcessor;
+    private final TaskScheduler taskScheduler;
+    private final FairShareScheduler queue;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    // Workers holding or waiting to fill a batch
+    private final ReentrantLock turnLock = new ReentrantLock();
+    private final Condition turnReleased = turnLock.newCondition();
+    private int activeWorkers;
+
+    // Documents queued or running on this node, with the System.nanoTime they were queued at
+    private final ConcurrentHashMap<Long, Long> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<DocumentPriority, Timer> queueWaitTimers = new EnumMap<>(DocumentPriority.class);
+
+    @Value("${processing.batch.max-size:1}")
+    private int maxBatchSize;
+
+    @Value("${processing.batch.linger-ms:50}")
+    private long lingerMs;
+
+    private volatile boolean running;
+
+    public ProcessingDispatcher(@Qualifier("documentProcessingExecutor") TaskExecutor executor,
+                                DocumentProcessor documentProcessor, TaskScheduler taskScheduler,
+                                @Value("${processing.queue-capacity:100}") int queueCapacity,
+                                @Value("${processing.scheduler.interactive-weight:4}") int interactiveWeight,
+                                @Value("${processing.scheduler.bulk-weight:1}") int bulkWeight,
+                                @Value("${processing.scheduler.max-wait-ms:300000}") long maxWaitMs,
+                                AdaptiveConcurrencyLimiter mlConcurrencyLimiter, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.documentProcessor = documentProcessor;
+        this.taskScheduler = taskScheduler;
+        this.concurrencyLimiter = mlConcurrencyLimiter;
+        this.queue = new FairShareScheduler(
+                Map.of(DocumentPriority.INTERACTIVE, interactiveWeight, DocumentPriority.BULK, bulkWeight),
+                queueCapacity, Duration.ofMillis(maxWaitMs));
+
+        for (DocumentPriority priority : DocumentPriority.values()) {
+            Gauge.builder("processing.queue.size", queue, q -> q.size(priority))
+                    .description("Documents queued for a worker on this node")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+            queueWaitTimers.put(priority, Timer.builder("processing.queue.wait")
+                    .description("Time from being queued on this node to being taken by a worker")
+                    .tag("priority", priority.name())
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofMillis(maxWaitMs))
+                    .register(meterRegistry));
+        }
+        Gauge.builder("processing.in.flight", inFlight, Map::size)
+                .description("Documents queued or being processed on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start processing as soon as the upload transaction has committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDocumentUploaded(DocumentUploadedEvent event) {
+        dispatch(event.document());
+    }
+
+    /**
+     * Dispatch a document again once its retry backoff is over
+     * Only a shortcut, the recovery sweep picks the document up as well if this node goes away
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRetryScheduled(DocumentRetryScheduledEvent event) {
+        taskScheduler.schedule(() -> dispatch(event.document()), Instant.now().plus(event.delay()));
+    }
+
+    /**
+     * Queue a document for the workers
+     * Returns false when the queue of the document's class is full, it then stays PENDING for a later sweep
+     */
+    public boolean dispatch(QueuedDocument document) {
+        if (inFlight.putIfAbsent(document.id(), System.nanoTime()) != null) {
+            return true;
+        }
+
+        if (!queue.offer(document)) {
+            inFlight.remove(document.id());
+            logger.debug("Processing queue for {} full, document ID {} left PENDING", document.priority(), document.id());
+            return false;
+        }
+        return true;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        // One per possible concurrent ML call
+        int workers = concurrencyLimiter.maxLimit();
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::runWorker);
+        }
+        logger.info("Started {} processing workers, batch size {}", workers, maxBatchSize);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runWorker() {
+        while (running) {
+            List<Long> batch;
+            try {
+                if (!awaitTurn()) {
+                    continue;
+                }
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (batch.isEmpty()) {
+                releaseTurn();
+                continue;
+            }
+
+            try {
+                if (batch.size() == 1) {
+                    documentProcessor.process(batch.get(0));
+                } else {
+                    documentProcessor.processBatch(batch);
+                }
+            } catch (Exception e) {
+                logger.error("Unexpected error processing documents: {}", batch, e);
+            } finally {
+                batch.forEach(inFlight::remove);
+                releaseTurn();
+            }
+        }
+    }
+
+    /**
+     * Wait until fewer workers are active than the ML concurrency limit
+     * Returns false after a second of waiting so workers notice shutdown
+     */
+    private boolean awaitTurn() throws InterruptedException {
+        turnLock.lock();
+        try {
+            // The limit also grows while batches run, every finished batch signals
+            if (activeWorkers >= concurrencyLimiter.limit()
+                    && (!turnReleased.await(1, TimeUnit.SECONDS) || activeWorkers >= concurrencyLimiter.limit())) {
+                return false;
+            }
+            activeWorkers++;
+            return true;
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    private void releaseTurn() {
+        turnLock.lock();
+        try {
+            activeWorkers--;
+            turnReleased.signal();
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the next document, then collect more until the batch is full or the linger time is up
+     * Returns an empty batch after a second of idling so workers notice shutdown
+     */
+    private List<Long> nextBatch() throws InterruptedException {
+        QueuedDocument first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return List.of();
+        }
+
+        List<Long> batch = new ArrayList<>(maxBatchSize);
+        batch.add(taken(first));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (batch.size() < maxBatchSize) {
+            QueuedDocument next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(taken(next));
+        }
+        return batch;
+    }
+
+    private Long taken(QueuedDocument document) {
+        Long queuedAt = inFlight.get(document.id());
+        if (queuedAt != null) {
+            queueWaitTimers.get(document.priority()).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        }
+        return document.id();
+    }
+}
@@ -0,0 +1,23 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+
+import java.time.LocalDateTime;
+
+/**
+ * What the scheduler needs to know about a document waiting for processing
+ * Documents without a submitter, e.g. uploaded before submitters were recorded, share one fair share slot
+ */
+public record QueuedDocument(Long id, DocumentPriority priority, String submitter, LocalDateTime createdAt) {
+
+    public static final String ANONYMOUS = "anonymous";
+
+    public QueuedDocument {
+        if (priority == null) {
+            priority = DocumentPriority.INTERACTIVE;
+        }
+        if (submitter == null) {
+            submitter = ANONYMOUS;
+        }
+    }
+}
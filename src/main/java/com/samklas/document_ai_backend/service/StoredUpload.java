@@ -0,0 +1,7 @@
+package com.samklas.document_ai_backend.service;
+
+/**
+ * A file written to storage that has no document row yet
+ */
+public record StoredUpload(String filename, String contentType, String filepath, long size, String contentHash) {
+}
@@ -0,0 +1,44 @@
+package com.samklas.document_ai_backend.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Storage for uploaded document files
+ * Content is addressed by key, the key is what Document.filepath holds. Identical content may share a key.
+ */
+public interface DocumentStore {
+
+    /**
+     * Stream content into the store, hashing it on the way
+     * Leaves the input stream open
+     */
+    StoredObject put(InputStream in) throws IOException;
+
+    /**
+     * Content of a stored object, read lazily
+     */
+    Resource load(String key);
+
+    boolean exists(String key);
+
+    /**
+     * Delete a stored object together with its variants
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Content derived from a stored object, e.g. a preprocessed image, kept next to it
+     * Empty until that variant has been stored
+     */
+    Optional<Resource> findVariant(String key, String variant);
+
+    /**
+     * Store a variant of a stored object, replacing an earlier one
+     * Readers never see a partially written variant. Leaves the input stream open
+     */
+    Resource putVariant(String key, String variant, InputStream in) throws IOException;
+}
@@ -0,0 +1,19 @@
+package com.samklas.document_ai_backend.storage;
+
+/**
+ * How hard a stored file is pushed to disk before put() returns
+ */
+public enum FsyncPolicy {
+    /**
+     * Leave flushing to the OS, a crash may lose recent uploads
+     */
+    NONE,
+    /**
+     * Force file contents before the rename, the file is complete whenever it is visible
+     */
+    FILE,
+    /**
+     * Also force the directory after the rename, the file survives a crash once put() returns
+     */
+    FILE_AND_DIRECTORY
+}
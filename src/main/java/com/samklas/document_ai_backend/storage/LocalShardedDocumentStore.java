@@ -0,0 +1,208 @@
+package com.samklas.document_ai_backend.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Content addressed store on the local filesystem
+ * A file with SHA-256 abcdef... is kept at ab/cd/abcdef..., so no directory holds more than a
+ * bounded share of the corpus and identical uploads are stored once. Files are written to tmp/
+ * under the same root and renamed into place, readers never see a partial file. Variants of a file
+ * sit next to it as abcdef....variant.
+ */
+public class LocalShardedDocumentStore implements DocumentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalShardedDocumentStore.class);
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}");
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9-]+");
+
+    private final Path root;
+    private final Path tempDir;
+    private final FsyncPolicy fsyncPolicy;
+
+    // Shard directories known to exist, saves a filesystem check per upload
+    private final Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+
+    public LocalShardedDocumentStore(Path root, FsyncPolicy fsyncPolicy) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tempDir = this.root.resolve("tmp");
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(tempDir);
+    }
+
+    @Override
+    public StoredObject put(InputStream in) throws IOException {
+        Path tempFile = tempDir.resolve(UUID.randomUUID() + ".tmp");
+        MessageDigest digest = newContentDigest();
+        long size;
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            size = new DigestInputStream(in, digest).transferTo(out);
+
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        String key = contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4) + "/" + contentHash;
+        Path target = root.resolve(key);
+
+        try {
+            moveIntoPlace(tempFile, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return new StoredObject(key, size, contentHash);
+    }
+
+    @Override
+    public Resource load(String key) {
+        return new FileSystemResource(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path file = resolve(key);
+        Files.deleteIfExists(file);
+
+        // Not a glob, legacy file names may contain glob characters
+        String prefix = file.getFileName() + ".";
+        DirectoryStream.Filter<Path> isVariant = path -> {
+            String name = path.getFileName().toString();
+            return name.startsWith(prefix) && VARIANT_PATTERN.matcher(name.substring(prefix.length())).matches();
+        };
+        if (Files.isDirectory(file.getParent())) {
+            try (DirectoryStream<Path> variants = Files.newDirectoryStream(file.getParent(), isVariant)) {
+                for (Path variant : variants) {
+                    Files.deleteIfExists(variant);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<Resource> findVariant(String key, String variant) {
+        Path file = resolveVariant(key, variant);
+        return Files.exists(file) ? Optional.of(new FileSystemResource(file)) : Optional.empty();
+    }
+
+    @Override
+    public Resource putVariant(String key, String variant, InputStream in) throws IOException {
+        Path target = resolveVariant(key, variant);
+        Path tempFile = tempDir.resolve(UUID.randomUUID() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                in.transferTo(Channels.newOutputStream(channel));
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            }
+            // Variants are derived, a concurrent writer produced the same bytes
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.warn("Atomic rename not supported under {}, falling back to a plain move", root);
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return new FileSystemResource(target);
+    }
+
+    /**
+     * Documents stored before the sharded layout keep their file path as key
+     */
+    Path resolve(String key) {
+        if (KEY_PATTERN.matcher(key).matches()) {
+            return root.resolve(key);
+        }
+        return Paths.get(key);
+    }
+
+    private Path resolveVariant(String key, String variant) {
+        if (!VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Invalid variant name: " + variant);
+        }
+        Path file = resolve(key);
+        return file.resolveSibling(file.getFileName() + "." + variant);
+    }
+
+    /**
+     * Identical content is already in place, the new copy is dropped
+     */
+    private void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        if (Files.exists(target)) {
+            Files.delete(tempFile);
+            return;
+        }
+
+        // Cached only once created, a concurrent upload to the same shard must not skip ahead of it
+        Path directory = target.getParent();
+        if (!knownDirectories.contains(directory)) {
+            Files.createDirectories(directory);
+            knownDirectories.add(directory);
+        }
+
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Same content uploaded concurrently
+            Files.delete(tempFile);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.warn("Atomic rename not supported under {}, falling back to a plain move", root);
+            Files.move(tempFile, target);
+        }
+
+        if (fsyncPolicy == FsyncPolicy.FILE_AND_DIRECTORY) {
+            try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+        }
+    }
+
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.samklas.document_ai_backend.storage;
+
+/**
+ * Result of storing content, contentHash is the hex SHA-256 of the bytes
+ */
+public record StoredObject(String key, long size, String contentHash) {
+}
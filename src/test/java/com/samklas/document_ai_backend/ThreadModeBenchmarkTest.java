@@ -0,0 +1,183 @@
+package com.samklas.document_ai_backend;
+
+import com.samklas.document_ai_backend.integration.StubMLServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares platform and virtual thread request handling under many slow concurrent uploads
+ * Every client trickles its body in over UPLOAD_DURATION_MS, the case where a platform thread per
+ * request sits blocked on the socket. Excluded from the default build, run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class ThreadModeBenchmarkTest {
+
+    private static final int CLIENTS = 1000;
+    private static final int CHUNKS = 8;
+    private static final int CHUNK_BYTES = 1024;
+    private static final long UPLOAD_DURATION_MS = 400;
+    private static final int PLATFORM_MAX_THREADS = 200;
+    private static final int WARMUP_UPLOADS = 50;
+
+    private static final String BOUNDARY = "benchmark-boundary";
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void compareThreadModes() throws Exception {
+        try (StubMLServer stub = StubMLServer.start()) {
+            Result platform = run(false, stub);
+            Result virtual = run(true, stub);
+
+            System.out.printf("%n%-10s %8s %10s %8s %8s %8s%n", "mode", "uploads", "wall ms", "p50 ms", "p95 ms", "p99 ms");
+            for (Result result : List.of(platform, virtual)) {
+                System.out.printf("%-10s %8d %10d %8d %8d %8d%n", result.mode, result.succeeded, result.wallMs,
+                        result.percentile(50), result.percentile(95), result.percentile(99));
+            }
+
+            assertEquals(CLIENTS, platform.succeeded);
+            assertEquals(CLIENTS, virtual.succeeded);
+        }
+    }
+
+    private Result run(boolean virtualThreads, StubMLServer stub) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+
+        // Arguments, not default properties, so they win over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + PLATFORM_MAX_THREADS,
+                // All clients connect at once, a short accept backlog would measure SYN retransmits
+                "--server.tomcat.accept-count=" + CLIENTS,
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-" + mode + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--document.storage.path=" + storage.resolve(mode),
+                "--search.index.path=" + storage.resolve(mode + "-search-index"),
+                "--ml.service.url=" + stub.url(),
+                "--upload.admission.max-concurrent=" + (CLIENTS * 2),
+                "--upload.admission.max-inflight-bytes=1GB");
+
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://127.0.0.1:" + port + "/api/documents");
+
+            // Platform client threads, the client must not be what limits concurrency
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            try {
+                // Load classes and warm up the JIT first, otherwise the first wave only measures class loading
+                List<Future<Long>> warmup = new ArrayList<>();
+                for (int i = 0; i < WARMUP_UPLOADS; i++) {
+                    warmup.add(clients.submit(() -> upload(uri)));
+                }
+                for (Future<Long> upload : warmup) {
+                    upload.get();
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> uploads = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    uploads.add(clients.submit(() -> {
+                        start.await();
+                        return upload(uri);
+                    }));
+                }
+
+                long startedAt = System.nanoTime();
+                start.countDown();
+
+                long[] latencies = new long[CLIENTS];
+                int succeeded = 0;
+                for (Future<Long> upload : uploads) {
+                    long latency = upload.get();
+                    if (latency >= 0) {
+                        latencies[succeeded++] = latency;
+                    }
+                }
+                long wallMs = (System.nanoTime() - startedAt) / 1_000_000;
+                return new Result(mode, succeeded, wallMs, Arrays.copyOf(latencies, succeeded));
+            } finally {
+                clients.shutdownNow();
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Upload one file slowly, returns the latency in ms or -1 when the upload was not accepted
+     */
+    private static long upload(URI uri) throws IOException, InterruptedException {
+        byte[] head = ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"scan.png\"\r\n" +
+                "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[CHUNKS * CHUNK_BYTES];
+        ThreadLocalRandom.current().nextBytes(content);
+
+        long startedAt = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+            connection.setFixedLengthStreamingMode(head.length + content.length + tail.length);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(head);
+                for (int i = 0; i < CHUNKS; i++) {
+                    out.write(content, i * CHUNK_BYTES, CHUNK_BYTES);
+                    out.flush();
+                    Thread.sleep(UPLOAD_DURATION_MS / CHUNKS);
+                }
+                out.write(tail);
+            }
+
+            int status = connection.getResponseCode();
+            try (var in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    in.transferTo(new ByteArrayOutputStream());
+                }
+            }
+            return status == 201 ? (System.nanoTime() - startedAt) / 1_000_000 : -1;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private record Result(String mode, int succeeded, long wallMs, long[] latencies) {
+
+        long percentile(int percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.samklas.document_ai_backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.integration.StubMLServer;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import com.samklas.document_ai_backend.service.DocumentStatusChangedEvent;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load test: uploads at a fixed rate against the app and a local stub ML service
+ * Uploads are sent open loop, on schedule whether earlier ones have answered or not, and latencies
+ * count from the scheduled time, so a slow server cannot hide its queueing. Reports upload latency,
+ * upload-to-COMPLETED latency, documents per second and database connection and heap figures.
+ * Excluded from the default build, run with: mvn test -Ploadtest
+ * Tune with -Dloadtest.rate, -Dloadtest.duration-seconds, -Dloadtest.file-size, -Dloadtest.ml.median-ms,
+ * -Dloadtest.ml.error-rate and pass application properties with -Dloadtest.args="--ml.resilience.limit.max=8"
+ */
+@Tag("loadtest")
+class UploadLoadTest {
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 50);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 20);
+    private static final int FILE_SIZE = Integer.getInteger("loadtest.file-size", 4096);
+    private static final int ML_MEDIAN_MS = Integer.getInteger("loadtest.ml.median-ms", 100);
+    private static final double ML_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.ml.error-rate", "0.02"));
+    private static final String APP_ARGS = System.getProperty("loadtest.args", "");
+
+    // Spread of the stub's log-normal latency, about a 1.6x ratio between p50 and p84
+    private static final double ML_LATENCY_SIGMA = 0.5;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(3);
+
+    private static final String BOUNDARY = "loadtest-boundary";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Scheduled send time and completion time per document, in System.nanoTime
+    private final Map<Long, Long> uploadedAt = new ConcurrentHashMap<>();
+    private final Map<Long, Long> finishedAt = new ConcurrentHashMap<>();
+    private final Map<Long, DocumentStatus> finalStatus = new ConcurrentHashMap<>();
+
+    private final List<Long> uploadLatencies = new ArrayList<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    private final AtomicLong maxHeapUsed = new AtomicLong();
+    private final AtomicInteger maxActiveConnections = new AtomicInteger();
+    private final AtomicInteger maxAwaitingConnection = new AtomicInteger();
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void sustainedUploadRate() throws Exception {
+        try (StubMLServer stub = StubMLServer.start()
+                .withLatencyDistribution(() -> logNormal(ML_MEDIAN_MS))
+                .withErrorRate(ML_ERROR_RATE)) {
+
+            List<String> args = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN",
+                    "--document.storage.path=" + storage.resolve("documents"),
+                    "--search.index.path=" + storage.resolve("search-index"),
+                    "--ml.service.url=" + stub.url()));
+            if (!APP_ARGS.isBlank()) {
+                args.addAll(Arrays.asList(APP_ARGS.trim().split("\\s+")));
+            }
+
+            // Listener sees status changes as the processor publishes them
+            ApplicationListener<PayloadApplicationEvent<DocumentStatusChangedEvent>> statusListener =
+                    event -> onStatusChanged(event.getPayload());
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .listeners(statusListener)
+                    .run(args.toArray(String[]::new));
+
+            try {
+                run(context);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private void run(ConfigurableApplicationContext context) throws Exception {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/documents");
+        HikariPoolMXBean pool = context.getBean(HikariDataSource.class).getHikariPoolMXBean();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMs();
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+        scheduler.scheduleAtFixedRate(() -> sample(pool), 0, 250, TimeUnit.MILLISECONDS);
+
+        int total = RATE * DURATION_SECONDS;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long startedAt = System.nanoTime();
+
+        for (int i = 0; i < total; i++) {
+            long scheduledAt = startedAt + i * intervalNanos;
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            int sequence = i;
+            senders.execute(() -> upload(httpClient, uri, sequence, scheduledAt));
+        }
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.MINUTES);
+        long sendingDoneAt = System.nanoTime();
+
+        // Wait for the pipeline to drain
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (finalStatus.size() < uploadedAt.size() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        scheduler.shutdownNow();
+
+        DocumentRepository repository = context.getBean(DocumentRepository.class);
+        report(total, startedAt, sendingDoneAt, repository, gcCount() - gcCountBefore, gcTimeMs() - gcTimeBefore);
+
+        assertEquals(uploadedAt.size(), finalStatus.size(), "Every accepted upload reached COMPLETED or FAILED");
+        assertEquals(0, errors.get(), "Uploads failed with errors");
+    }
+
+    private void upload(HttpClient httpClient, URI uri, int sequence, long scheduledAt) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .header("X-Submitter", "loadtest-" + (sequence % 10))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipartBody(sequence)))
+                    .build();
+
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long answeredAt = System.nanoTime();
+
+            if (response.statusCode() == 429 || response.statusCode() == 503) {
+                rejected.incrementAndGet();
+                return;
+            }
+            if (response.statusCode() != 201) {
+                errors.incrementAndGet();
+                return;
+            }
+
+            JsonNode document = objectMapper.readTree(response.body());
+            uploadedAt.put(document.get("id").asLong(), scheduledAt);
+            synchronized (uploadLatencies) {
+                uploadLatencies.add(answeredAt - scheduledAt);
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private void onStatusChanged(DocumentStatusChangedEvent event) {
+        if (event.status() == DocumentStatus.COMPLETED || event.status() == DocumentStatus.FAILED) {
+            finishedAt.putIfAbsent(event.documentId(), System.nanoTime());
+            finalStatus.putIfAbsent(event.documentId(), event.status());
+        }
+    }
+
+    private void sample(HikariPoolMXBean pool) {
+        maxHeapUsed.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+        maxActiveConnections.accumulateAndGet(pool.getActiveConnections(), Math::max);
+        maxAwaitingConnection.accumulateAndGet(pool.getThreadsAwaitingConnection(), Math::max);
+    }
+
+    private void report(int total, long startedAt, long sendingDoneAt, DocumentRepository repository,
+                        long gcCount, long gcTimeMs) {
+        long[] upload;
+        synchronized (uploadLatencies) {
+            upload = uploadLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        long[] endToEnd = uploadedAt.entrySet().stream()
+                .filter(entry -> finishedAt.containsKey(entry.getKey()))
+                .mapToLong(entry -> finishedAt.get(entry.getKey()) - entry.getValue())
+                .sorted()
+                .toArray();
+        long lastFinishedAt = finishedAt.values().stream().mapToLong(Long::longValue).max().orElse(sendingDoneAt);
+        double elapsedSeconds = (lastFinishedAt - startedAt) / 1e9;
+        long failed = finalStatus.values().stream().filter(status -> status == DocumentStatus.FAILED).count();
+
+        System.out.printf("%nLoad test: %d uploads/s for %d s, %d byte files, ML median %d ms, error rate %.2f%n",
+                RATE, DURATION_SECONDS, FILE_SIZE, ML_MEDIAN_MS, ML_ERROR_RATE);
+        System.out.printf("Uploads           sent %d, accepted %d, rejected %d, errors %d%n",
+                total, uploadedAt.size(), rejected.get(), errors.get());
+        System.out.printf("Finished          completed %d, failed %d, unfinished %d%n",
+                finalStatus.size() - failed, failed, uploadedAt.size() - finalStatus.size());
+        System.out.printf("%-17s %8s %8s %8s %8s%n", "latency ms", "p50", "p90", "p99", "max");
+        printPercentiles("upload", upload);
+        printPercentiles("upload-completed", endToEnd);
+        System.out.printf("Throughput        %.1f documents/s finished, sent for %.1f s, drained after %.1f s%n",
+                finalStatus.size() / elapsedSeconds, (sendingDoneAt - startedAt) / 1e9, elapsedSeconds);
+        System.out.printf("Database          %d PENDING, %d COMPLETED, %d FAILED, max %d active connections, " +
+                        "max %d threads waiting for one%n",
+                repository.countByStatus(DocumentStatus.PENDING), repository.countByStatus(DocumentStatus.COMPLETED),
+                repository.countByStatus(DocumentStatus.FAILED), maxActiveConnections.get(), maxAwaitingConnection.get());
+        System.out.printf("Heap              max used %d MB, %d GCs taking %d ms%n",
+                maxHeapUsed.get() / (1024 * 1024), gcCount, gcTimeMs);
+    }
+
+    private static void printPercentiles(String name, long[] sortedNanos) {
+        System.out.printf("%-17s %8d %8d %8d %8d%n", name, percentileMs(sortedNanos, 50), percentileMs(sortedNanos, 90),
+                percentileMs(sortedNanos, 99), percentileMs(sortedNanos, 100));
+    }
+
+    private static long percentileMs(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sortedNanos.length - 1, (int) Math.ceil(sortedNanos.length * percentile / 100.0) - 1);
+        return sortedNanos[Math.max(index, 0)] / 1_000_000;
+    }
+
+    /**
+     * Printable content, so the stub's echoed text is stored like real extracted text
+     * The sequence number keeps every file unique, no upload is answered from the OCR result cache
+     */
+    private static byte[] multipartBody(int sequence) {
+        Random random = new Random(sequence);
+        StringBuilder content = new StringBuilder(FILE_SIZE).append("document ").append(sequence).append(' ');
+        while (content.length() < FILE_SIZE) {
+            content.append((char) (random.nextInt(10) == 0 ? ' ' : 'a' + random.nextInt(26)));
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(FILE_SIZE + 256);
+        body.writeBytes(("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"scan-" + sequence + ".png\"\r\n" +
+                "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(content.toString().getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private static long logNormal(long medianMs) {
+        return Math.round(medianMs * Math.exp(ML_LATENCY_SIGMA * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.samklas.document_ai_backend.benchmark;
+
+import com.samklas.document_ai_backend.storage.FsyncPolicy;
+import com.samklas.document_ai_backend.storage.LocalShardedDocumentStore;
+import com.samklas.document_ai_backend.storage.StoredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisting an upload: reading the spooled part into a byte[] versus streaming it into the DocumentStore
+ * The upload is read from a file, like a multipart part Tomcat has spooled to disk. Fsync is off so
+ * the numbers show CPU and allocation, not the disk. The content is the same in every invocation, the
+ * streamed copy is written in full and then dropped as a duplicate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class DocumentStoreBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    private int fileSize;
+
+    private Path directory;
+    private Path upload;
+    private Path byteArrayTarget;
+    private LocalShardedDocumentStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("document-store-benchmark");
+        store = new LocalShardedDocumentStore(directory.resolve("store"), FsyncPolicy.NONE);
+
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        upload = Files.write(directory.resolve("upload.part"), content);
+        byteArrayTarget = directory.resolve("byte-array.bin");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    /**
+     * Whole file in memory, hashed and written in one go
+     */
+    @Benchmark
+    public String byteArray() throws Exception {
+        byte[] content = Files.readAllBytes(upload);
+        String contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        Files.write(byteArrayTarget, content);
+        return contentHash;
+    }
+
+    /**
+     * DocumentService.storeFile, hashed while copying through a fixed buffer
+     */
+    @Benchmark
+    public StoredObject streaming() throws IOException {
+        try (InputStream in = Files.newInputStream(upload)) {
+            return store.put(in);
+        }
+    }
+}
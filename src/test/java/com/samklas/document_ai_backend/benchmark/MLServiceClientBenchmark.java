@@ -0,0 +1,109 @@
+package com.samklas.document_ai_backend.benchmark;
+
+import com.samklas.document_ai_backend.integration.AdaptiveConcurrencyLimiter;
+import com.samklas.document_ai_backend.integration.CircuitBreaker;
+import com.samklas.document_ai_backend.integration.MLServiceClient;
+import com.samklas.document_ai_backend.integration.StubMLServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multipart encoding and the round trip of ML service calls against the in-process stub
+ * Compares sending a byte[] with streaming the file, and one request per document with a batch.
+ * The stub answers without delay and runs in the same JVM, its request parsing shows up in the
+ * allocation rate as well. Compare runs with each other, not with a real ML service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MLServiceClientBenchmark {
+
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"65536", "1048576"})
+    private int fileSize;
+
+    private StubMLServer stub;
+    private MLServiceClient client;
+    private Path directory;
+    private Path file;
+    private byte[] content;
+    private List<MLServiceClient.BatchItem> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = StubMLServer.start();
+
+        // Pooled HTTP/1.1 connections, as configured for the application
+        RestClient restClient = RestClient.builder()
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(HttpClients.createDefault()))
+                .build();
+        client = new MLServiceClient(restClient, new CircuitBreaker(5, Duration.ofSeconds(30)),
+                new AdaptiveConcurrencyLimiter(50, 1, 50, 2.0, Duration.ofSeconds(5)), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(client, "mlServiceUrl", stub.url());
+        ReflectionTestUtils.setField(client, "batchPath", "/api/process/batch");
+
+        content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        directory = Files.createTempDirectory("ml-client-benchmark");
+        file = Files.write(directory.resolve("scan.png"), content);
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new MLServiceClient.BatchItem(file, "image/png"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stub.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public MLServiceClient.MLResponse singleFromBytes() {
+        return client.processDocument(content, "image/png");
+    }
+
+    @Benchmark
+    public MLServiceClient.MLResponse singleStreamed() {
+        return client.processDocument(file, "image/png");
+    }
+
+    /**
+     * One request for BATCH_SIZE documents, compare with BATCH_SIZE times singleStreamed
+     */
+    @Benchmark
+    public List<MLServiceClient.BatchResult> batchStreamed() {
+        return client.processBatch(batch);
+    }
+}
@@ -0,0 +1,134 @@
+package com.samklas.document_ai_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.dto.DocumentResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing list pages and single documents the way the controller answers them
+ * Lists come straight from the repository projection, so building a page is the DocumentListResponse
+ * constructor. Serialization is measured both into a byte[] and streamed, the way the message
+ * converter writes the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ResponseSerializationBenchmark {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 26, 16, 49);
+
+    @Param({"50", "500", "5000"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private List<DocumentListResponse> page;
+    private DocumentResponse document;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Same settings as the application's ObjectMapper
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        writer = objectMapper.writer();
+
+        page = buildPage();
+        document = new DocumentResponse(1L, "scan.png", DocumentStatus.COMPLETED.name(), "invoice",
+                extractedText(pageSize * 100), CREATED_AT, CREATED_AT.plusSeconds(3));
+    }
+
+    @Benchmark
+    public List<DocumentListResponse> buildListPage() {
+        return buildPage();
+    }
+
+    @Benchmark
+    public byte[] listPageToBytes() throws IOException {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public void listPageStreamed(Blackhole blackhole) throws IOException {
+        writer.writeValue(new BlackholeOutputStream(blackhole), page);
+    }
+
+    /**
+     * A completed document with about pageSize * 100 characters of extracted text
+     */
+    @Benchmark
+    public void documentStreamed(Blackhole blackhole) throws IOException {
+        writer.writeValue(new BlackholeOutputStream(blackhole), document);
+    }
+
+    private List<DocumentListResponse> buildPage() {
+        List<DocumentListResponse> items = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            items.add(new DocumentListResponse((long) i, "scan-" + i + ".png", DocumentStatus.COMPLETED,
+                    i % 3 == 0 ? "invoice" : "receipt", CREATED_AT.plusMinutes(i)));
+        }
+        return items;
+    }
+
+    private static String extractedText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(random.nextInt(3) == 0 ? '\n' : ' ');
+            for (int i = random.nextInt(10) + 1; i > 0; i--) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Hands written bytes to the blackhole, so the serializer's output is consumed but never stored
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.samklas.document_ai_backend.controller;
+
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against the application with an in-memory database
+ */
+@SpringBootTest(properties = {
+        "spring.servlet.multipart.max-request-size=8KB",
+        "upload.bulk.max-entries=3",
+        "upload.bulk.chunk-size=50",
+        "logging.level.root=WARN"
+})
+@AutoConfigureMockMvc
+class DocumentControllerTest {
+
+    @TempDir
+    static Path storage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:controller-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        registry.add("document.storage.path", () -> storage.resolve("documents").toString());
+        registry.add("search.index.path", () -> storage.resolve("search-index").toString());
+    }
+
+    @BeforeEach
+    void clear() {
+        documentRepository.deleteAll();
+    }
+
+    @Test
+    void archiveWithinLimitsIsStored() throws Exception {
+        MvcResult started = mockMvc.perform(archive(zip(3, 100)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(3, body.lines().count());
+        assertEquals(3, documentRepository.count());
+    }
+
+    @Test
+    void archiveWithTooManyFilesIsRefused() throws Exception {
+        MvcResult started = mockMvc.perform(archive(zip(4, 100)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isPayloadTooLarge());
+        assertEquals(0, documentRepository.count());
+    }
+
+    @Test
+    void archiveDeclaredLargerThanMaxRequestSizeIsRefusedUpFront() throws Exception {
+        mockMvc.perform(archive(zip(1, 10_000))).andExpect(status().isPayloadTooLarge());
+        assertEquals(0, documentRepository.count());
+    }
+
+    private static MockHttpServletRequestBuilder archive(byte[] zip) {
+        return post("/api/documents/bulk").contentType("application/zip").content(zip);
+    }
+
+    /**
+     * Entries are stored uncompressed with distinct content, so the archive is about files * size bytes
+     */
+    private static byte[] zip(int files, int size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.setLevel(0);
+            for (int i = 0; i < files; i++) {
+                zip.putNextEntry(new ZipEntry("scans/document-" + i + ".pdf"));
+                byte[] content = new byte[size];
+                byte[] prefix = ("document " + i + " " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(prefix, 0, content, 0, Math.min(prefix.length, size));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,132 @@
+package com.samklas.document_ai_backend.controller;
+
+import com.samklas.document_ai_backend.service.PendingBacklog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadAdmissionFilterTest {
+
+    private final FixedBacklog backlog = new FixedBacklog();
+    private final UploadAdmissionFilter filter = new UploadAdmissionFilter(backlog, 2, DataSize.ofKilobytes(100),
+            1000, DataSize.ofKilobytes(50), 2, 30);
+
+    @Test
+    void admitsUploadsWithinBudgetAndReleasesPermits() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+
+        MockHttpServletResponse response = upload(10_000, (request, res) -> handled.incrementAndGet());
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1, handled.get());
+        assertEquals(2, filter.availableUploads());
+        assertEquals(100 * 1024, filter.availableBytes());
+    }
+
+    @Test
+    void rejectsWithServiceUnavailableOverBacklogWatermark() throws Exception {
+        backlog.pending = 1000;
+
+        MockHttpServletResponse response = upload(10_000, (request, res) -> fail("Upload must not run"));
+
+        assertEquals(503, response.getStatus());
+        assertEquals("30", response.getHeader("Retry-After"));
+    }
+
+    @Test
+    void rejectsWithTooManyRequestsOverConcurrencyLimit() throws Exception {
+        MockHttpServletRequest first = startAsyncUpload(1000);
+        MockHttpServletRequest second = startAsyncUpload(1000);
+
+        MockHttpServletResponse third = upload(1000, (request, res) -> fail("Upload must not run"));
+        assertEquals(429, third.getStatus());
+        assertEquals("2", third.getHeader("Retry-After"));
+
+        // Streaming bulk responses hold their permits until the async request completes
+        first.getAsyncContext().complete();
+        assertEquals(1, filter.availableUploads());
+        assertEquals(200, upload(1000, (request, res) -> { }).getStatus());
+
+        second.getAsyncContext().complete();
+        assertEquals(2, filter.availableUploads());
+    }
+
+    @Test
+    void rejectsWithTooManyRequestsOverByteBudget() throws Exception {
+        MockHttpServletRequest large = startAsyncUpload(80 * 1024);
+
+        MockHttpServletResponse response = upload(40 * 1024, (request, res) -> fail("Upload must not run"));
+        assertEquals(429, response.getStatus());
+        // The rejected upload gave its concurrency permit back
+        assertEquals(1, filter.availableUploads());
+
+        large.getAsyncContext().complete();
+        assertEquals(200, upload(40 * 1024, (request, res) -> { }).getStatus());
+    }
+
+    @Test
+    void chunkedUploadIsChargedAsOneMaximumSizeFile() throws Exception {
+        MockHttpServletRequest chunked = startAsyncUpload(-1);
+        assertEquals(50 * 1024, filter.availableBytes());
+
+        chunked.getAsyncContext().complete();
+        assertEquals(100 * 1024, filter.availableBytes());
+    }
+
+    @Test
+    void onlyUploadsAreChecked() throws Exception {
+        backlog.pending = 1000;
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/documents/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+    }
+
+    private MockHttpServletResponse upload(int contentLength, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = uploadRequest(contentLength);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletRequest startAsyncUpload(int contentLength) throws Exception {
+        MockHttpServletRequest request = uploadRequest(contentLength);
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+        assertEquals(200, response.getStatus());
+        return request;
+    }
+
+    private static MockHttpServletRequest uploadRequest(int contentLength) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/documents/bulk");
+        if (contentLength >= 0) {
+            request.setContent(new byte[contentLength]);
+        }
+        return request;
+    }
+
+    private static class FixedBacklog extends PendingBacklog {
+
+        private long pending;
+
+        FixedBacklog() {
+            super(null, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public long pending() {
+            return pending;
+        }
+    }
+}
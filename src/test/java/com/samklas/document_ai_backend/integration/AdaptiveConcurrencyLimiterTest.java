@@ -0,0 +1,104 @@
+package com.samklas.document_ai_backend.integration;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the limiter with synthetic latency samples, a round takes every permit and answers them all
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASE_LATENCY = Duration.ofMillis(20).toNanos();
+
+    @Test
+    void limitGrowsWhileLatencyStaysFlat() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 50);
+
+        rounds(limiter, 40, inFlight -> BASE_LATENCY);
+
+        assertTrue(limiter.limit() >= 10, "Limit should grow steadily, was " + limiter.limit());
+    }
+
+    @Test
+    void limitStopsAtMax() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 6);
+
+        rounds(limiter, 100, inFlight -> BASE_LATENCY);
+
+        assertEquals(6, limiter.limit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 50);
+        rounds(limiter, 5, inFlight -> BASE_LATENCY);
+        int before = limiter.limit();
+
+        rounds(limiter, 20, inFlight -> BASE_LATENCY * 4);
+
+        assertTrue(limiter.limit() < before / 2, "Limit should back off, went from " + before + " to " + limiter.limit());
+    }
+
+    @Test
+    void limitSettlesNearServiceCapacity() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 50);
+
+        // Service handles 4 requests at a time, anything beyond that queues up on its side
+        rounds(limiter, 300, inFlight -> BASE_LATENCY * Math.max(1, (inFlight + 3) / 4));
+
+        int limit = limiter.limit();
+        assertTrue(limit >= 2 && limit <= 12, "Limit should settle near the service capacity of 4, was " + limit);
+    }
+
+    @Test
+    void droppedRequestsShrinkTheLimitDownToMin() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 50);
+
+        assertTrue(limiter.tryAcquire());
+        limiter.onDropped();
+        assertEquals(9, limiter.limit());
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+        assertEquals(1, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void acquireFailsWhileTheLimitIsUsedUp() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 1.5, Duration.ofMillis(10));
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.onIgnored();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial, int max) {
+        return new AdaptiveConcurrencyLimiter(initial, 1, max, 1.5, Duration.ofMillis(10));
+    }
+
+    /**
+     * Each round sends as many requests as the limit allows, latency depends on how many were sent
+     */
+    private static void rounds(AdaptiveConcurrencyLimiter limiter, int rounds, IntToLongFunction latency)
+            throws InterruptedException {
+        for (int round = 0; round < rounds; round++) {
+            int inFlight = limiter.limit();
+            for (int i = 0; i < inFlight; i++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            for (int i = 0; i < inFlight; i++) {
+                limiter.onSuccess(latency.applyAsLong(inFlight));
+            }
+        }
+    }
+}
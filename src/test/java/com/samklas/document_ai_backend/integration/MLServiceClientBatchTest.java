@@ -0,0 +1,105 @@
+package com.samklas.document_ai_backend.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MLServiceClientBatchTest {
+
+    @TempDir
+    Path tempDir;
+
+    private StubMLServer stub;
+    private MLServiceClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = StubMLServer.start();
+        client = new MLServiceClient(RestClient.create(), new CircuitBreaker(5, Duration.ofSeconds(30)),
+                new AdaptiveConcurrencyLimiter(50, 1, 50, 2.0, Duration.ofSeconds(5)), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(client, "mlServiceUrl", stub.url());
+        ReflectionTestUtils.setField(client, "batchPath", "/api/process/batch");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void batchMapsPartialFailuresBackToEachDocument() throws IOException {
+        stub.failDocumentsWhere(content -> content.contains("corrupt"));
+
+        List<MLServiceClient.BatchResult> results = client.processBatch(List.of(
+                item("first"),
+                item("corrupt"),
+                item("third")
+        ));
+
+        assertEquals(3, results.size());
+        assertNull(results.get(0).getError());
+        assertEquals("text: first", results.get(0).getExtractedText());
+        assertNotNull(results.get(1).getError());
+        assertNull(results.get(2).getError());
+        assertEquals("text: third", results.get(2).getExtractedText());
+        assertEquals(1, stub.requestCount());
+    }
+
+    @Test
+    void documentsMissingFromTheResponseCountAsFailed() throws IOException {
+        stub.dropDocumentsWhere(content -> content.contains("lost"));
+
+        List<MLServiceClient.BatchResult> results = client.processBatch(List.of(item("lost"), item("kept")));
+
+        assertNotNull(results.get(0).getError());
+        assertEquals("text: kept", results.get(1).getExtractedText());
+    }
+
+    @Test
+    void failedBatchRequestThrows() throws IOException {
+        stub.failRequests(true);
+
+        List<MLServiceClient.BatchItem> items = List.of(item("a"), item("b"));
+
+        assertThrows(MLServiceClient.MLServiceException.class, () -> client.processBatch(items));
+    }
+
+    @Test
+    void batchesSendOneRequestPerBatch() throws IOException {
+        int documents = 20;
+        int batchSize = 5;
+        List<MLServiceClient.BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            items.add(item("document " + i));
+        }
+
+        List<MLServiceClient.BatchResult> results = new ArrayList<>();
+        for (int i = 0; i < documents; i += batchSize) {
+            results.addAll(client.processBatch(items.subList(i, i + batchSize)));
+        }
+
+        assertEquals(documents / batchSize, stub.requestCount());
+        for (int i = 0; i < documents; i++) {
+            assertEquals("text: document " + i, results.get(i).getExtractedText());
+        }
+    }
+
+    private MLServiceClient.BatchItem item(String content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "doc", ".txt");
+        Files.writeString(file, content);
+        return new MLServiceClient.BatchItem(file, "text/plain");
+    }
+}
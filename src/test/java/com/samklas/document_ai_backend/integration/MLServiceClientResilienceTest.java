@@ -0,0 +1,187 @@
+package com.samklas.document_ai_backend.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MLServiceClientResilienceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StubMLServer stub;
+    private Path document;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = StubMLServer.start();
+        document = Files.writeString(tempDir.resolve("doc.txt"), "content");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void overloadAnswersAreRetryable() {
+        MLServiceClient client = client(new CircuitBreaker(5, Duration.ofSeconds(30)), limiter(4));
+        stub.failRequests(true);
+
+        MLServiceClient.MLServiceException e = assertThrows(MLServiceClient.MLServiceException.class,
+                () -> client.processDocument(document, "text/plain"));
+
+        assertTrue(e.isRetryable());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {500, 501, 505, 429})
+    void serverErrorsAreRetryableAndOpenTheCircuit(int status) {
+        MLServiceClient client = client(new CircuitBreaker(2, Duration.ofSeconds(30)), limiter(4));
+        stub.failRequests(true, status);
+
+        for (int i = 0; i < 2; i++) {
+            MLServiceClient.MLServiceException e = assertThrows(MLServiceClient.MLServiceException.class,
+                    () -> client.processDocument(document, "text/plain"));
+            assertTrue(e.isRetryable());
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+    }
+
+    @Test
+    void documentErrorsAreNotRetryableAndKeepTheCircuitClosed() {
+        MLServiceClient client = client(new CircuitBreaker(3, Duration.ofSeconds(30)), limiter(4));
+        stub.failDocumentsWhere(content -> true);
+
+        for (int i = 0; i < 5; i++) {
+            MLServiceClient.MLServiceException e = assertThrows(MLServiceClient.MLServiceException.class,
+                    () -> client.processDocument(document, "text/plain"));
+            assertFalse(e.isRetryable());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+        assertEquals(5, stub.requestCount());
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingTheService() {
+        MLServiceClient client = client(new CircuitBreaker(3, Duration.ofSeconds(30)), limiter(4));
+        stub.failRequests(true);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(MLServiceClient.MLServiceException.class, () -> client.processDocument(document, "text/plain"));
+        }
+
+        MLServiceClient.MLServiceUnavailableException e = assertThrows(
+                MLServiceClient.MLServiceUnavailableException.class,
+                () -> client.processDocument(document, "text/plain"));
+
+        assertTrue(e.getRetryAfter().compareTo(Duration.ZERO) > 0);
+        assertEquals(3, stub.requestCount());
+    }
+
+    @Test
+    void circuitClosesWhenTheServiceRecovers() throws InterruptedException {
+        MLServiceClient client = client(new CircuitBreaker(1, Duration.ofMillis(200)), limiter(4));
+        stub.failRequests(true);
+        assertThrows(MLServiceClient.MLServiceException.class, () -> client.processDocument(document, "text/plain"));
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+
+        stub.failRequests(false);
+        Thread.sleep(250);
+
+        assertEquals("text: content", client.processDocument(document, "text/plain").getExtractedText());
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void sentRequestsAreTimedByStatusAndRejectionsCounted() {
+        MLServiceClient client = client(new CircuitBreaker(1, Duration.ofSeconds(30)), limiter(4));
+        client.processDocument(document, "text/plain");
+
+        stub.failRequests(true);
+        assertThrows(MLServiceClient.MLServiceException.class, () -> client.processDocument(document, "text/plain"));
+        assertThrows(MLServiceClient.MLServiceUnavailableException.class,
+                () -> client.processDocument(document, "text/plain"));
+
+        assertEquals(1, meterRegistry.get("ml.requests")
+                .tags("type", "single", "status", "200", "documentType", "INVOICE").timer().count());
+        assertEquals(1, meterRegistry.get("ml.requests")
+                .tags("type", "single", "status", "503", "documentType", "none").timer().count());
+        assertEquals(1, meterRegistry.get("ml.requests.rejected").tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void waitingForAPooledConnectionIsNotAServiceFailure() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(1)
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(50))
+                        .build())
+                .build();
+        RestClient restClient = RestClient.builder()
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+        MLServiceClient client = client(restClient, new CircuitBreaker(1, Duration.ofSeconds(30)), limiter);
+        stub.withRequestLatency(500);
+
+        // The first call holds the only connection until the stub answers
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> client.processDocument(document, "text/plain"));
+        while (stub.maxConcurrentRequests() == 0) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(MLServiceClient.MLServiceUnavailableException.class,
+                () -> client.processDocument(document, "text/plain"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+        assertEquals(2, limiter.limit());
+        assertEquals(1, meterRegistry.get("ml.requests").tag("status", "POOL_TIMEOUT").timer().count());
+
+        first.get();
+        assertEquals(1, stub.requestCount());
+        httpClient.close();
+    }
+
+    private MLServiceClient client(CircuitBreaker breaker, AdaptiveConcurrencyLimiter limiter) {
+        return client(RestClient.create(), breaker, limiter);
+    }
+
+    private MLServiceClient client(RestClient restClient, CircuitBreaker breaker, AdaptiveConcurrencyLimiter limiter) {
+        MLServiceClient client = new MLServiceClient(restClient, breaker, limiter, meterRegistry);
+        ReflectionTestUtils.setField(client, "mlServiceUrl", stub.url());
+        ReflectionTestUtils.setField(client, "batchPath", "/api/process/batch");
+        return client;
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int limit) {
+        return new AdaptiveConcurrencyLimiter(limit, 1, limit, 2.0, Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,279 @@
+package com.samklas.document_ai_backend.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the ML service
+ * Answers /api/process and /api/process/batch with configurable latency, failures and capacity
+ */
+public class StubMLServer implements AutoCloseable {
+
+    static {
+        // Otherwise Nagle plus delayed ACKs add ~40 ms to every multipart request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private volatile long requestLatencyMs;
+    private volatile long documentLatencyMs;
+    private volatile LongSupplier randomLatencyMs = () -> 0;
+    private volatile boolean failRequests;
+    private volatile int failureStatus = 503;
+    private volatile double errorRate;
+    private volatile Semaphore capacity;
+    private volatile Predicate<String> failDocument = content -> false;
+    private volatile Predicate<String> dropDocument = content -> false;
+
+    private StubMLServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/api/process/batch", this::handleBatch);
+        server.createContext("/api/process", this::handleSingle);
+    }
+
+    public static StubMLServer start() throws IOException {
+        StubMLServer stub = new StubMLServer();
+        stub.server.start();
+        return stub;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Fixed latency added to every request
+     */
+    public StubMLServer withRequestLatency(long millis) {
+        this.requestLatencyMs = millis;
+        return this;
+    }
+
+    /**
+     * Latency added per document in the request
+     */
+    public StubMLServer withDocumentLatency(long millis) {
+        this.documentLatencyMs = millis;
+        return this;
+    }
+
+    /**
+     * Latency drawn per request from the given distribution, on top of the fixed latencies
+     */
+    public StubMLServer withLatencyDistribution(LongSupplier millis) {
+        this.randomLatencyMs = millis;
+        return this;
+    }
+
+    /**
+     * Work on at most this many requests at once, the rest wait like on an overloaded service
+     */
+    public StubMLServer withCapacity(int requests) {
+        this.capacity = new Semaphore(requests, true);
+        return this;
+    }
+
+    /**
+     * Answer this fraction of requests with the failure status, 503 unless set
+     */
+    public StubMLServer withErrorRate(double rate) {
+        this.errorRate = rate;
+        return this;
+    }
+
+    /**
+     * Most requests that were open at the same time
+     */
+    public int maxConcurrentRequests() {
+        return maxActive.get();
+    }
+
+    /**
+     * Answer every request with 503
+     */
+    public StubMLServer failRequests(boolean fail) {
+        return failRequests(fail, 503);
+    }
+
+    /**
+     * Answer every request with the given status
+     */
+    public StubMLServer failRequests(boolean fail, int status) {
+        this.failureStatus = status;
+        this.failRequests = fail;
+        return this;
+    }
+
+    /**
+     * Report an error for documents whose content matches
+     */
+    public StubMLServer failDocumentsWhere(Predicate<String> predicate) {
+        this.failDocument = predicate;
+        return this;
+    }
+
+    /**
+     * Leave documents whose content matches out of batch responses
+     */
+    public StubMLServer dropDocumentsWhere(Predicate<String> predicate) {
+        this.dropDocument = predicate;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSingle(HttpExchange exchange) throws IOException {
+        List<String> documents = readDocuments(exchange);
+        work(requestLatencyMs + documentLatencyMs + randomLatencyMs.getAsLong());
+
+        if (unavailable() || documents.isEmpty()) {
+            respond(exchange, failureStatus, Map.of("error", "unavailable"));
+        } else if (failDocument.test(documents.get(0))) {
+            respond(exchange, 422, Map.of("error", "Unreadable document"));
+        } else {
+            respond(exchange, 200, result(documents.get(0)));
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        List<String> documents = readDocuments(exchange);
+        work(requestLatencyMs + documentLatencyMs * documents.size() + randomLatencyMs.getAsLong());
+
+        if (unavailable()) {
+            respond(exchange, failureStatus, Map.of("error", "unavailable"));
+            return;
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            String content = documents.get(i);
+            if (dropDocument.test(content)) {
+                continue;
+            }
+
+            Map<String, Object> result = failDocument.test(content)
+                    ? new LinkedHashMap<>(Map.of("error", "Unreadable document"))
+                    : result(content);
+            result.put("index", i);
+            results.add(result);
+        }
+        respond(exchange, 200, Map.of("results", results));
+    }
+
+    private boolean unavailable() {
+        return failRequests || (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate);
+    }
+
+    private void work(long millis) {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        Semaphore slots = capacity;
+        try {
+            if (slots == null) {
+                sleep(millis);
+                return;
+            }
+            slots.acquireUninterruptibly();
+            try {
+                sleep(millis);
+            } finally {
+                slots.release();
+            }
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static Map<String, Object> result(String content) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("extractedText", "text: " + content);
+        result.put("documentType", "INVOICE");
+        result.put("confidence", 0.9);
+        return result;
+    }
+
+    private List<String> readDocuments(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (InputStream in = exchange.getRequestBody()) {
+            return parseParts(exchange.getRequestHeaders().getFirst("Content-Type"), in.readAllBytes());
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    /**
+     * Minimal multipart parser, returns part contents in order
+     */
+    private static List<String> parseParts(String contentType, byte[] body) {
+        List<String> parts = new ArrayList<>();
+        if (contentType == null || !contentType.contains("boundary=")) {
+            return parts;
+        }
+
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + 9).split(";")[0].replace("\"", "");
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+
+        for (String section : text.split(Pattern.quote("--" + boundary))) {
+            int headerEnd = section.indexOf("\r\n\r\n");
+            if (section.startsWith("--") || headerEnd < 0) {
+                continue;
+            }
+
+            String content = section.substring(headerEnd + 4);
+            if (content.endsWith("\r\n")) {
+                content = content.substring(0, content.length() - 2);
+            }
+            parts.add(content);
+        }
+        return parts;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
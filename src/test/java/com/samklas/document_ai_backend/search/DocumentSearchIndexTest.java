@@ -0,0 +1,104 @@
+package com.samklas.document_ai_backend.search;
+
+import com.samklas.document_ai_backend.dto.DocumentSearchHit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentSearchIndexTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2025, 1, 15, 12, 0);
+    private static final LocalDateTime MARCH = LocalDateTime.of(2025, 3, 15, 12, 0);
+
+    @TempDir
+    Path path;
+
+    private DocumentSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new DocumentSearchIndex(path);
+        index.index(1L, "scan-1.png", "INVOICE", JANUARY, "Invoice from Acme Supplies, total 120 EUR");
+        index.index(2L, "scan-2.png", "RECEIPT", MARCH, "Receipt Acme Supplies Acme Supplies coffee");
+        index.index(3L, "scan-3.png", "INVOICE", MARCH, "Invoice from Globex for consulting");
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void ranksBetterMatchesFirst() throws IOException {
+        DocumentSearchIndex.SearchResult result = index.search("acme", null, null, null, 0, 10);
+
+        assertEquals(2, result.totalHits());
+        assertEquals(List.of(2L, 1L), ids(result));
+        assertTrue(result.hits().get(0).getScore() > result.hits().get(1).getScore());
+    }
+
+    @Test
+    void filtersByTypeAndCreationTime() throws IOException {
+        assertEquals(List.of(1L), ids(index.search("acme", "INVOICE", null, null, 0, 10)));
+        assertEquals(List.of(3L), ids(index.search("invoice", null, MARCH.minusDays(1), null, 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("invoice", null, null, MARCH.minusDays(1), 0, 10)));
+    }
+
+    @Test
+    void returnsListFieldsWithoutTheDatabase() throws IOException {
+        DocumentSearchHit hit = index.search("globex", null, null, null, 0, 10).hits().get(0);
+
+        assertEquals(3L, hit.getId());
+        assertEquals("scan-3.png", hit.getFilename());
+        assertEquals("INVOICE", hit.getDocumentType());
+        assertEquals(MARCH, hit.getCreatedAt());
+    }
+
+    @Test
+    void pagesThroughHits() throws IOException {
+        DocumentSearchIndex.SearchResult secondPage = index.search("invoice | receipt", null, null, null, 2, 2);
+
+        assertEquals(3, secondPage.totalHits());
+        assertEquals(1, secondPage.hits().size());
+    }
+
+    @Test
+    void reindexingReplacesTheEarlierEntry() throws IOException {
+        index.index(3L, "scan-3.png", "INVOICE", MARCH, "Invoice from Initech");
+        index.refresh();
+
+        assertEquals(0, index.search("globex", null, null, null, 0, 10).totalHits());
+        assertEquals(List.of(3L), ids(index.search("initech", null, null, null, 0, 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void queryWithoutTermsMatchesNothing() throws IOException {
+        assertEquals(0, index.search("... !", null, null, null, 0, 10).totalHits());
+    }
+
+    @Test
+    void commitsSurviveReopening() throws IOException {
+        assertNull(index.indexedUpTo(), "Nothing committed yet");
+
+        index.commit(MARCH);
+        index.close();
+        index = new DocumentSearchIndex(path);
+
+        assertEquals(MARCH, index.indexedUpTo());
+        assertEquals(List.of(3L), ids(index.search("globex", null, null, null, 0, 10)));
+    }
+
+    private static List<Long> ids(DocumentSearchIndex.SearchResult result) {
+        return result.hits().stream().map(DocumentSearchHit::getId).toList();
+    }
+}
@@ -0,0 +1,123 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.integration.MLServiceClient;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the application with an in-memory database
+ * The processor under test gets its own repository, which fails on chosen calls
+ */
+@SpringBootTest(properties = {
+        // The scheduled sweep stays out of the way of PENDING test documents
+        "processing.sweep-interval-ms=600000",
+        "logging.level.root=WARN"
+})
+class DocumentProcessorTest {
+
+    @TempDir
+    static Path storage;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private MLServiceClient mlServiceClient;
+
+    @Autowired
+    private OcrResultCache ocrResultCache;
+
+    @Autowired
+    private DocumentTextStore documentTextStore;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:processor-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        registry.add("document.storage.path", () -> storage.resolve("documents").toString());
+        registry.add("search.index.path", () -> storage.resolve("search-index").toString());
+    }
+
+    @Test
+    void claimedDocumentsAreReleasedWhenClaimingFailsPartway() {
+        Long first = insertPending();
+        Long second = insertPending();
+        Long unreachable = insertPending();
+        DocumentProcessor processor = processor(failingClaimOf(unreachable));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> processor.processBatch(List.of(first, second, unreachable)));
+
+        for (Long id : List.of(first, second, unreachable)) {
+            Document document = documentRepository.findById(id).orElseThrow();
+            assertEquals(DocumentStatus.PENDING, document.getStatus());
+            assertNull(document.getLeaseOwner());
+            assertEquals(0, document.getRetryCount(), "Nothing was sent, no attempt counted");
+        }
+    }
+
+    private DocumentProcessor processor(DocumentRepository repository) {
+        DocumentProcessor processor = new DocumentProcessor(repository, mlServiceClient, ocrResultCache,
+                documentTextStore, imagePreprocessor, transactionManager, eventPublisher, "test-node", 300_000,
+                new SimpleMeterRegistry());
+        // Released documents come back long after the test
+        ReflectionTestUtils.setField(processor, "retryBaseDelayMs", 600_000L);
+        return processor;
+    }
+
+    /**
+     * The application's repository, except that claiming the given document fails like a lost connection
+     */
+    private DocumentRepository failingClaimOf(Long documentId) {
+        return (DocumentRepository) Proxy.newProxyInstance(DocumentRepository.class.getClassLoader(),
+                new Class<?>[]{DocumentRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("claim") && documentId.equals(args[0])) {
+                        throw new DataAccessResourceFailureException("Connection lost");
+                    }
+                    try {
+                        return method.invoke(documentRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Not due yet, so the application's own sweep leaves it to the test
+     */
+    private Long insertPending() {
+        Document document = new Document("scan.png", "legacy/" + UUID.randomUUID(), "image/png", 1L,
+                DocumentStatus.PENDING);
+        document.setNextAttemptAt(LocalDateTime.now().plusHours(1));
+        return documentRepository.save(document).getId();
+    }
+}
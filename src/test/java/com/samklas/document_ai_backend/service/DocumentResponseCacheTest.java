@@ -0,0 +1,73 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentResponse;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentResponseCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final DocumentResponseCache cache = new DocumentResponseCache(
+            1_000_000, Duration.ofHours(1).toMillis(), Duration.ofSeconds(2).toMillis(),
+            new SimpleMeterRegistry(), now::get);
+
+    @Test
+    void repeatReadsAreServedFromTheCache() {
+        DocumentResponse first = cache.get(1L, id -> load(id, DocumentStatus.COMPLETED));
+        DocumentResponse second = cache.get(1L, id -> load(id, DocumentStatus.COMPLETED));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void missingDocumentsAreNotCached() {
+        assertNull(cache.get(1L, id -> null));
+        assertNotNull(cache.get(1L, id -> load(id, DocumentStatus.PENDING)));
+    }
+
+    @Test
+    void documentsInProgressExpireSoonerThanFinishedOnes() {
+        cache.get(1L, id -> load(id, DocumentStatus.PROCESSING));
+        cache.get(2L, id -> load(id, DocumentStatus.COMPLETED));
+
+        advance(Duration.ofSeconds(3));
+        cache.get(1L, id -> load(id, DocumentStatus.PROCESSING));
+        cache.get(2L, id -> load(id, DocumentStatus.COMPLETED));
+        assertEquals(3, loads.get(), "Only the PROCESSING document is loaded again");
+
+        advance(Duration.ofHours(2));
+        cache.get(2L, id -> load(id, DocumentStatus.COMPLETED));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void statusChangesEvictTheDocument() {
+        cache.get(1L, id -> load(id, DocumentStatus.PROCESSING));
+        cache.onStatusChanged(new DocumentStatusChangedEvent(1L, DocumentStatus.COMPLETED, "INVOICE"));
+
+        assertEquals(DocumentStatus.COMPLETED.name(), cache.get(1L, id -> load(id, DocumentStatus.COMPLETED)).getStatus());
+        assertEquals(2, loads.get());
+    }
+
+    private DocumentResponse load(Long id, DocumentStatus status) {
+        loads.incrementAndGet();
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 26, 16, 49);
+        return new DocumentResponse(id, "scan.png", status.name(), null,
+                status == DocumentStatus.COMPLETED ? "text" : null, createdAt, null);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,187 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentResponse;
+import com.samklas.document_ai_backend.dto.DocumentSearchHit;
+import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.integration.StubMLServer;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import com.samklas.document_ai_backend.search.DocumentSearchIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the application with an in-memory database and the stub ML service
+ * The poll interval is far longer than the tests, documents only get into the context's index
+ * through events. Polling and catch-up are driven directly on a separate service and index.
+ */
+@SpringBootTest(properties = {
+        "search.index.refresh-interval-ms=100",
+        "search.index.poll-interval-ms=600000",
+        "logging.level.root=WARN"
+})
+class DocumentSearchServiceTest {
+
+    private static final StubMLServer stub = startStub();
+
+    @TempDir
+    static Path storage;
+
+    @TempDir
+    Path otherIndexPath;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentSearchService searchService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTextStore documentTextStore;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:search-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        registry.add("document.storage.path", () -> storage.resolve("documents").toString());
+        registry.add("search.index.path", () -> storage.resolve("search-index").toString());
+        registry.add("ml.service.url", stub::url);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void duplicateCompletedFromTheOcrCacheIsSearchable() {
+        DocumentResponse original = upload("quarterly zanzibar invoice");
+        await(() -> searchIds("zanzibar").contains(original.getId()));
+
+        DocumentResponse duplicate = upload("quarterly zanzibar invoice");
+        assertEquals(DocumentStatus.COMPLETED.name(), duplicate.getStatus(), "Completed at upload");
+
+        await(() -> searchIds("zanzibar").contains(duplicate.getId()));
+        assertEquals(1, stub.requestCount(), "The duplicate never reached the ML service");
+    }
+
+    @Test
+    void pollIndexesDocumentsCompletedWithoutAnEvent() throws IOException {
+        try (DocumentSearchIndex index = new DocumentSearchIndex(otherIndexPath)) {
+            DocumentSearchService otherNode = new DocumentSearchService(index, documentRepository, documentTextStore);
+            otherNode.catchUp();
+
+            // Completed by another node, this one hears nothing about it
+            Long id = insertCompleted("receipt from a kumquat stall", LocalDateTime.now());
+            assertEquals(0, index.search("kumquat", null, null, null, 0, 10).totalHits());
+
+            otherNode.pollCompleted();
+
+            assertEquals(List.of(id), ids(index.search("kumquat", null, null, null, 0, 10)));
+        }
+    }
+
+    @Test
+    void restartCatchesUpOnDocumentsCompletedSinceTheLastCommit() throws IOException {
+        LocalDateTime lastCommit = LocalDateTime.now().minusHours(1);
+        try (DocumentSearchIndex index = new DocumentSearchIndex(otherIndexPath)) {
+            index.commit(lastCommit);
+        }
+
+        // Indexed before the last commit as far as the index knows, not touched again
+        insertCompleted("contract with a quokka sanctuary", lastCommit.minusMinutes(5));
+        // Completed while this node was down
+        Long missed = insertCompleted("contract with a quokka breeder", lastCommit.plusMinutes(30));
+
+        try (DocumentSearchIndex index = new DocumentSearchIndex(otherIndexPath)) {
+            new DocumentSearchService(index, documentRepository, documentTextStore).catchUp();
+
+            assertEquals(List.of(missed), ids(index.search("quokka", null, null, null, 0, 10)));
+        }
+    }
+
+    @Test
+    void completedDocumentsArePagedByProcessingTimeAcrossTies() {
+        // Later than anything the other tests complete
+        LocalDateTime from = LocalDateTime.of(2100, 1, 1, 0, 0);
+        Long later = insertCompleted("later", from.plusMinutes(1));
+        Long first = insertCompleted("first", from);
+        Long second = insertCompleted("second", from);
+        Long third = insertCompleted("third", from);
+
+        List<CompletedDocument> page = documentRepository.findCompletedAfter(from, 0L, Limit.of(2));
+        assertEquals(List.of(first, second), page.stream().map(CompletedDocument::id).toList());
+
+        CompletedDocument last = page.get(1);
+        page = documentRepository.findCompletedAfter(last.processedAt(), last.id(), Limit.of(2));
+        assertEquals(List.of(third, later), page.stream().map(CompletedDocument::id).toList());
+    }
+
+    private DocumentResponse upload(String content) {
+        MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png",
+                content.getBytes(StandardCharsets.UTF_8));
+        return documentService.processDocument(file, DocumentPriority.INTERACTIVE, null);
+    }
+
+    private Long insertCompleted(String text, LocalDateTime processedAt) {
+        Document document = new Document("scan.png", "legacy/" + UUID.randomUUID(), "image/png", 1L,
+                DocumentStatus.COMPLETED);
+        document.setDocumentType("CONTRACT");
+        document.setCreatedAt(processedAt.minusMinutes(1));
+        document.setProcessedAt(processedAt);
+        Long id = documentRepository.save(document).getId();
+        documentTextStore.save(id, text);
+        return id;
+    }
+
+    private List<Long> searchIds(String query) {
+        return ids(searchService.search(query, null, null, null, 0, 10));
+    }
+
+    private static List<Long> ids(DocumentSearchIndex.SearchResult result) {
+        return result.hits().stream().map(DocumentSearchHit::getId).toList();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 10 s");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static StubMLServer startStub() {
+        try {
+            return StubMLServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
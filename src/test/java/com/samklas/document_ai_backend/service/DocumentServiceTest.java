@@ -0,0 +1,157 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.dto.DocumentListResponse;
+import com.samklas.document_ai_backend.dto.DocumentPage;
+import com.samklas.document_ai_backend.entity.Document;
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.entity.DocumentStatus;
+import com.samklas.document_ai_backend.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the application with an in-memory database, documents are inserted directly
+ */
+@SpringBootTest(properties = {
+        // The scheduled sweep stays out of the way of PENDING test documents
+        "processing.sweep-interval-ms=600000",
+        "logging.level.root=WARN"
+})
+class DocumentServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @TempDir
+    static Path storage;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:documents-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        registry.add("document.storage.path", () -> storage.resolve("documents").toString());
+        registry.add("search.index.path", () -> storage.resolve("search-index").toString());
+    }
+
+    @BeforeEach
+    void clear() {
+        documentRepository.deleteAll();
+    }
+
+    @Test
+    void pagesFollowCreationTimeNewestFirstAcrossTies() {
+        List<Long> expected = new ArrayList<>();
+        for (int minute = 0; minute < 4; minute++) {
+            // Three documents share each creation time
+            for (int i = 0; i < 3; i++) {
+                expected.add(insert(DocumentStatus.COMPLETED, "INVOICE", START.plusMinutes(minute)));
+            }
+        }
+        List<Long> newestFirst = new ArrayList<>(expected);
+        newestFirst.sort((a, b) -> Long.compare(b, a));
+
+        assertEquals(newestFirst, listAll(null, null, 5));
+    }
+
+    @Test
+    void filtersOnlyReturnMatchingDocuments() {
+        Long failedInvoice = insert(DocumentStatus.FAILED, "INVOICE", START);
+        insert(DocumentStatus.COMPLETED, "INVOICE", START.plusMinutes(1));
+        Long failedReceipt = insert(DocumentStatus.FAILED, "RECEIPT", START.plusMinutes(2));
+        insert(DocumentStatus.COMPLETED, "RECEIPT", START.plusMinutes(3));
+
+        assertEquals(List.of(failedReceipt, failedInvoice), listAll(DocumentStatus.FAILED, null, 1));
+        assertEquals(List.of(failedInvoice), listAll(DocumentStatus.FAILED, "INVOICE", 1));
+    }
+
+    @Test
+    void interactiveDocumentsAreDueWhateverTheBulkBacklog() {
+        for (int i = 0; i < 5; i++) {
+            insert(DocumentStatus.PENDING, DocumentPriority.BULK, START.plusMinutes(i));
+        }
+        Long upload = insert(DocumentStatus.PENDING, DocumentPriority.INTERACTIVE, START.plusMinutes(10));
+
+        List<QueuedDocument> due = documentRepository.findDue(DocumentPriority.INTERACTIVE, LocalDateTime.now(), Limit.of(2));
+
+        assertEquals(List.of(upload), due.stream().map(QueuedDocument::id).toList());
+        assertEquals(2, documentRepository.findDue(DocumentPriority.BULK, LocalDateTime.now(), Limit.of(2)).size());
+    }
+
+    @Test
+    void expiredLeasesCountAsAttemptsUntilTheDocumentFails() {
+        Long retried = insertLeased(3);
+        Long exhausted = insertLeased(4);
+
+        documentService.releaseExpiredLeases();
+
+        Document released = documentRepository.findById(retried).orElseThrow();
+        assertEquals(DocumentStatus.PENDING, released.getStatus());
+        assertEquals(4, released.getRetryCount());
+
+        Document failed = documentRepository.findById(exhausted).orElseThrow();
+        assertEquals(DocumentStatus.FAILED, failed.getStatus());
+        assertEquals(5, failed.getRetryCount());
+        assertNotNull(failed.getErrorMessage());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> documentService.listDocuments(null, null, null, null, "bm90LWEtY3Vyc29y", 10));
+    }
+
+    private List<Long> listAll(DocumentStatus status, String documentType, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            DocumentPage page = documentService.listDocuments(status, documentType, null, null, cursor, pageSize);
+            page.getItems().stream().map(DocumentListResponse::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private Long insert(DocumentStatus status, String documentType, LocalDateTime createdAt) {
+        Document document = new Document("scan.png", "legacy/" + UUID.randomUUID(), "image/png", 1L, status);
+        document.setDocumentType(documentType);
+        document.setCreatedAt(createdAt);
+        return documentRepository.save(document).getId();
+    }
+
+    /**
+     * PROCESSING under a lease that ran out a minute ago
+     */
+    private Long insertLeased(int retryCount) {
+        Document document = new Document("scan.png", "legacy/" + UUID.randomUUID(), "image/png", 1L,
+                DocumentStatus.PROCESSING);
+        document.setLeaseOwner("crashed-node");
+        document.setLeaseExpiresAt(LocalDateTime.now().minusMinutes(1));
+        document.setRetryCount(retryCount);
+        return documentRepository.save(document).getId();
+    }
+
+    private Long insert(DocumentStatus status, DocumentPriority priority, LocalDateTime createdAt) {
+        Document document = new Document("scan.png", "legacy/" + UUID.randomUUID(), "image/png", 1L, status);
+        document.setPriority(priority);
+        document.setCreatedAt(createdAt);
+        return documentRepository.save(document).getId();
+    }
+}
@@ -0,0 +1,116 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairShareSchedulerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final FairShareScheduler scheduler = new FairShareScheduler(
+            Map.of(DocumentPriority.INTERACTIVE, 4, DocumentPriority.BULK, 1),
+            1000, Duration.ofMinutes(5), clock::get);
+
+    private long nextId = 1;
+
+    @Test
+    void interactiveGetsItsWeightedShareWhileBulkKeepsRunning() throws InterruptedException {
+        offer(DocumentPriority.BULK, "importer", 100);
+        offer(DocumentPriority.INTERACTIVE, "alice", 100);
+
+        List<QueuedDocument> firstTen = take(10);
+
+        long interactive = firstTen.stream().filter(d -> d.priority() == DocumentPriority.INTERACTIVE).count();
+        assertEquals(8, interactive);
+        assertEquals(2, firstTen.size() - interactive);
+    }
+
+    @Test
+    void submittersOfTheSameClassTakeTurns() throws InterruptedException {
+        offer(DocumentPriority.BULK, "big-import", 50);
+        offer(DocumentPriority.BULK, "small", 2);
+
+        List<String> submitters = take(4).stream().map(QueuedDocument::submitter).toList();
+
+        assertEquals(List.of("big-import", "small", "big-import", "small"), submitters);
+    }
+
+    @Test
+    void singleUploadIsNotStuckBehindABulkImport() throws InterruptedException {
+        offer(DocumentPriority.BULK, "importer", 500);
+        take(3);
+        QueuedDocument upload = offer(DocumentPriority.INTERACTIVE, "alice", 1).get(0);
+
+        assertEquals(upload, scheduler.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void idleClassDoesNotBankTurns() throws InterruptedException {
+        offer(DocumentPriority.BULK, "importer", 100);
+        take(50);
+
+        // Bulk ran alone for a while, interactive still only gets its weighted share
+        offer(DocumentPriority.INTERACTIVE, "alice", 100);
+        long bulk = take(10).stream().filter(d -> d.priority() == DocumentPriority.BULK).count();
+
+        assertEquals(2, bulk);
+    }
+
+    @Test
+    void documentWaitingLongerThanMaxWaitIsTakenFirst() throws InterruptedException {
+        QueuedDocument old = offer(DocumentPriority.BULK, "importer", 1).get(0);
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+        offer(DocumentPriority.INTERACTIVE, "alice", 10);
+
+        assertEquals(old, scheduler.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void capacityIsPerClass() {
+        FairShareScheduler small = new FairShareScheduler(
+                Map.of(DocumentPriority.INTERACTIVE, 4, DocumentPriority.BULK, 1), 2, Duration.ofMinutes(5));
+
+        assertTrue(small.offer(document(DocumentPriority.BULK, "importer")));
+        assertTrue(small.offer(document(DocumentPriority.BULK, "importer")));
+        assertFalse(small.offer(document(DocumentPriority.BULK, "importer")));
+        assertTrue(small.offer(document(DocumentPriority.INTERACTIVE, "alice")));
+        assertEquals(3, small.size());
+    }
+
+    @Test
+    void pollTimesOutWhenEmpty() throws InterruptedException {
+        assertNull(scheduler.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    private List<QueuedDocument> offer(DocumentPriority priority, String submitter, int count) {
+        List<QueuedDocument> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            QueuedDocument document = document(priority, submitter);
+            assertTrue(scheduler.offer(document));
+            documents.add(document);
+            clock.incrementAndGet();
+        }
+        return documents;
+    }
+
+    private List<QueuedDocument> take(int count) throws InterruptedException {
+        List<QueuedDocument> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            taken.add(scheduler.poll(0, TimeUnit.MILLISECONDS));
+        }
+        return taken;
+    }
+
+    private QueuedDocument document(DocumentPriority priority, String submitter) {
+        return new QueuedDocument(nextId++, priority, submitter, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,154 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.storage.FsyncPolicy;
+import com.samklas.document_ai_backend.storage.LocalShardedDocumentStore;
+import com.samklas.document_ai_backend.storage.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    // Long edge of 585 pixels
+    private static final int TARGET_DPI = 50;
+
+    @TempDir
+    Path root;
+
+    private LocalShardedDocumentStore store;
+    private ImagePreprocessor preprocessor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new LocalShardedDocumentStore(root, FsyncPolicy.NONE);
+        preprocessor = new ImagePreprocessor(store, true, TARGET_DPI, 0.85f, 1, 100_000_000,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        preprocessor.shutdown();
+    }
+
+    @Test
+    void shrinksLargeScansToGrayscaleAtTheTargetResolution() throws IOException {
+        StoredObject stored = store.put(new ByteArrayInputStream(encode(page(2400, 1800), "png")));
+
+        Resource prepared = preprocessor.prepare(stored.key(), "image/png");
+
+        BufferedImage image = read(prepared);
+        assertEquals(585, image.getWidth());
+        assertEquals(439, image.getHeight());
+        assertEquals(1, image.getRaster().getNumBands(), "Grayscale");
+        assertTrue(prepared.contentLength() < stored.size());
+    }
+
+    @Test
+    void appliesTheExifOrientationAndDropsTheMetadata() throws IOException {
+        byte[] jpeg = withExifOrientation(encode(page(1600, 800), "jpeg"), 6);
+        StoredObject stored = store.put(new ByteArrayInputStream(jpeg));
+
+        Resource prepared = preprocessor.prepare(stored.key(), "image/jpeg");
+
+        BufferedImage image = read(prepared);
+        assertEquals(293, image.getWidth());
+        assertEquals(585, image.getHeight());
+        try (InputStream in = prepared.getInputStream()) {
+            assertEquals(1, ImagePreprocessor.readExifOrientation(in), "No EXIF left");
+        }
+    }
+
+    @Test
+    void preprocessedImageIsKeptNextToTheOriginal() throws IOException {
+        StoredObject stored = store.put(new ByteArrayInputStream(encode(page(2400, 1800), "png")));
+
+        Resource first = preprocessor.prepare(stored.key(), "image/png");
+        Resource second = preprocessor.prepare(stored.key(), "image/png");
+
+        assertEquals(first.getFile(), second.getFile());
+        assertEquals(root.resolve(stored.key()).getParent(), first.getFile().toPath().getParent());
+
+        store.delete(stored.key());
+        assertFalse(first.exists(), "Deleted with the original");
+    }
+
+    @Test
+    void otherDocumentsAreSentAsUploaded() throws IOException {
+        StoredObject pdf = store.put(new ByteArrayInputStream("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+        StoredObject small = store.put(new ByteArrayInputStream(encode(new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY), "png")));
+
+        assertEquals(root.resolve(pdf.key()).toFile(), preprocessor.prepare(pdf.key(), "application/pdf").getFile());
+        assertEquals(root.resolve(small.key()).toFile(), preprocessor.prepare(small.key(), "image/png").getFile(),
+                "Nothing to gain from re-encoding");
+    }
+
+    /**
+     * Colored page with lines of noisy dark marks standing in for text
+     */
+    private static BufferedImage page(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(245, 240, 225));
+        graphics.fillRect(0, 0, width, height);
+
+        Random random = new Random(42);
+        for (int y = height / 20; y < height - height / 20; y += height / 30) {
+            for (int x = width / 20; x < width - width / 20; x += width / 100) {
+                graphics.setColor(new Color(random.nextInt(60), random.nextInt(60), random.nextInt(90)));
+                graphics.fillRect(x, y, width / 150 + random.nextInt(4), height / 50);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * JPEG with a minimal big endian EXIF segment holding only the orientation tag
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        ByteBuffer exif = ByteBuffer.allocate(2 + 2 + 6 + 8 + 2 + 12 + 4);
+        exif.putShort((short) 0xFFE1).putShort((short) (exif.capacity() - 2));
+        exif.put("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        exif.put("MM".getBytes(StandardCharsets.ISO_8859_1)).putShort((short) 42).putInt(8);
+        exif.putShort((short) 1);
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        exif.putInt(0);
+
+        // Right after the SOI marker
+        byte[] result = Arrays.copyOf(jpeg, jpeg.length + exif.capacity());
+        System.arraycopy(exif.array(), 0, result, 2, exif.capacity());
+        System.arraycopy(jpeg, 2, result, 2 + exif.capacity(), jpeg.length - 2);
+        return result;
+    }
+
+    private static BufferedImage read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return ImageIO.read(in);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.samklas.document_ai_backend.service;
+
+import com.samklas.document_ai_backend.entity.DocumentPriority;
+import com.samklas.document_ai_backend.integration.MLServiceClient;
+import com.samklas.document_ai_backend.integration.StubMLServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the application with an in-memory database and the stub ML service
+ * Waits on real processing, excluded from the default build, run with: mvn test -Ploadtest
+ */
+@SpringBootTest(properties = {
+        "ml.resilience.limit.initial=4",
+        "ml.resilience.limit.max=20",
+        "logging.level.root=WARN"
+})
+@Tag("loadtest")
+class ProcessingDispatcherTest {
+
+    private static final int DOCUMENTS = 80;
+
+    private static final StubMLServer stub = startStub();
+
+    @TempDir
+    static Path storage;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private MLServiceClient mlServiceClient;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:dispatch-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        registry.add("document.storage.path", () -> storage.resolve("documents").toString());
+        registry.add("search.index.path", () -> storage.resolve("search-index").toString());
+        registry.add("ml.service.url", stub::url);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void concurrentCallsGrowPastTheInitialLimitWhileTheServiceIsHealthy() throws InterruptedException {
+        stub.withRequestLatency(100);
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png",
+                    ("document " + i).getBytes(StandardCharsets.UTF_8));
+            documentService.processDocument(file, DocumentPriority.BULK, "importer");
+        }
+
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (stub.requestCount() < DOCUMENTS) {
+            if (System.nanoTime() > deadline) {
+                fail("Only " + stub.requestCount() + " of " + DOCUMENTS + " documents processed within 30 s");
+            }
+            Thread.sleep(50);
+        }
+
+        assertTrue(mlServiceClient.concurrencyLimit() > 4,
+                "Limit should grow while latency stays flat, was " + mlServiceClient.concurrencyLimit());
+        assertTrue(stub.maxConcurrentRequests() > 4,
+                "Workers should follow the limit, at most " + stub.maxConcurrentRequests() + " calls were in flight");
+    }
+
+    private static StubMLServer startStub() {
+        try {
+            return StubMLServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
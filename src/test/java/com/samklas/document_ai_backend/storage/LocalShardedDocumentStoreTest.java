@@ -0,0 +1,119 @@
+package com.samklas.document_ai_backend.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalShardedDocumentStoreTest {
+
+    @TempDir
+    Path root;
+
+    private LocalShardedDocumentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new LocalShardedDocumentStore(root, FsyncPolicy.FILE_AND_DIRECTORY);
+    }
+
+    @Test
+    void storesContentUnderItsHashPrefix() throws IOException {
+        StoredObject stored = store.put(stream("invoice 1"));
+
+        String hash = stored.contentHash();
+        assertEquals(64, hash.length());
+        assertEquals(hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash, stored.key());
+        assertEquals(9, stored.size());
+        assertEquals("invoice 1", read(stored.key()));
+    }
+
+    @Test
+    void identicalContentIsStoredOnce() throws IOException {
+        StoredObject first = store.put(stream("same bytes"));
+        StoredObject second = store.put(stream("same bytes"));
+
+        assertEquals(first.key(), second.key());
+        assertEquals(1, countFiles(root.resolve(first.key().substring(0, 5))));
+        assertEquals(0, countFiles(root.resolve("tmp")), "Temp files are moved or removed");
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameContentAllSucceed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<StoredObject>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> store.put(stream("uploaded twice at once"))));
+            }
+            for (Future<StoredObject> result : results) {
+                assertEquals("uploaded twice at once", read(result.get().key()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, countFiles(root.resolve("tmp")));
+    }
+
+    @Test
+    void legacyFilePathsStayReadable() throws IOException {
+        Path legacy = Files.writeString(root.resolve("0b1c_scan.png"), "old upload");
+
+        assertTrue(store.exists(legacy.toString()));
+        assertEquals("old upload", read(legacy.toString()));
+    }
+
+    @Test
+    void deleteRemovesTheFile() throws IOException {
+        StoredObject stored = store.put(stream("to be removed"));
+
+        store.delete(stored.key());
+
+        assertFalse(store.exists(stored.key()));
+    }
+
+    @Test
+    void failedWriteLeavesNoTempFile() {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("client went away");
+            }
+        };
+
+        assertThrows(IOException.class, () -> store.put(broken));
+        assertEquals(0, countFiles(root.resolve("tmp")));
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream in = store.load(key).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long countFiles(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}